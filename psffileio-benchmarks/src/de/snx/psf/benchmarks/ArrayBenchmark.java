@@ -0,0 +1,169 @@
+package de.snx.psf.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.snx.psf.PSFFileIO;
+
+/**
+ * Writing and reading of the packed arrays of every primitive type
+ *
+ * @author Sunnix
+ *
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ArrayBenchmark {
+
+	@Param({ "16", "4096" })
+	public int length;
+
+	private File file;
+	private PSFFileIO io;
+	private char[] chars;
+	private byte[] bytes;
+	private short[] shorts;
+	private int[] ints;
+	private long[] longs;
+	private float[] floats;
+	private double[] doubles;
+	private boolean[] booleans;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		file = Benchmarks.tempFile();
+		chars = new char[length];
+		bytes = new byte[length];
+		shorts = new short[length];
+		ints = new int[length];
+		longs = new long[length];
+		floats = new float[length];
+		doubles = new double[length];
+		booleans = new boolean[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) ('a' + i % 26);
+			bytes[i] = (byte) i;
+			shorts[i] = (short) i;
+			ints[i] = i;
+			longs[i] = i * 31L;
+			floats[i] = i * 0.5f;
+			doubles[i] = i * 0.25;
+			booleans[i] = i % 3 == 0;
+		}
+		PSFFileIO writer = new PSFFileIO(file, "w");
+		writer.write("chars", chars);
+		writer.write("bytes", bytes);
+		writer.write("shorts", shorts);
+		writer.write("ints", ints);
+		writer.write("longs", longs);
+		writer.write("floats", floats);
+		writer.write("doubles", doubles);
+		writer.write("booleans", booleans);
+		writer.close();
+		// the arrays are read from the file, like in an application
+		io = new PSFFileIO(file, "r");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Benchmark
+	public void writeCharArray() throws Exception {
+		io.write("chars", chars);
+	}
+
+	@Benchmark
+	public char[] readCharArray() throws Exception {
+		return io.readCharArray("chars");
+	}
+
+	@Benchmark
+	public void writeByteArray() throws Exception {
+		io.write("bytes", bytes);
+	}
+
+	@Benchmark
+	public byte[] readByteArray() throws Exception {
+		return io.readByteArray("bytes");
+	}
+
+	@Benchmark
+	public void writeShortArray() throws Exception {
+		io.write("shorts", shorts);
+	}
+
+	@Benchmark
+	public short[] readShortArray() throws Exception {
+		return io.readShortArray("shorts");
+	}
+
+	@Benchmark
+	public void writeIntArray() throws Exception {
+		io.write("ints", ints);
+	}
+
+	@Benchmark
+	public int[] readIntArray() throws Exception {
+		return io.readIntArray("ints");
+	}
+
+	@Benchmark
+	public void writeLongArray() throws Exception {
+		io.write("longs", longs);
+	}
+
+	@Benchmark
+	public long[] readLongArray() throws Exception {
+		return io.readLongArray("longs");
+	}
+
+	@Benchmark
+	public void writeFloatArray() throws Exception {
+		io.write("floats", floats);
+	}
+
+	@Benchmark
+	public float[] readFloatArray() throws Exception {
+		return io.readFloatArray("floats");
+	}
+
+	@Benchmark
+	public void writeDoubleArray() throws Exception {
+		io.write("doubles", doubles);
+	}
+
+	@Benchmark
+	public double[] readDoubleArray() throws Exception {
+		return io.readDoubleArray("doubles");
+	}
+
+	@Benchmark
+	public void writeBooleanArray() throws Exception {
+		io.write("booleans", booleans);
+	}
+
+	@Benchmark
+	public boolean[] readBooleanArray() throws Exception {
+		return io.readBooleanArray("booleans");
+	}
+}
@@ -0,0 +1,60 @@
+package de.snx.psf.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import de.snx.psf.PSFFileIO;
+
+/**
+ * Shared setup of the benchmarks
+ *
+ * @author Sunnix
+ *
+ */
+final class Benchmarks {
+
+	private Benchmarks() {
+	}
+
+	/**
+	 * @return a new empty file, which has to be deleted by the benchmark
+	 */
+	static File tempFile() throws IOException {
+		File file = Files.createTempFile("psf-bench", ".psf").toFile();
+		file.deleteOnExit();
+		return file;
+	}
+
+	/**
+	 * Writes profiles like "profiles/p42" with some values and a stats room
+	 */
+	static void writeProfiles(PSFFileIO io, int count) {
+		io.exitAllRooms();
+		io.room("profiles", profiles -> {
+			for (int i = 0; i < count; i++) {
+				int id = i;
+				io.room("p" + id, p -> {
+					io.write("name", "Player " + id);
+					io.write("hp", id);
+					io.write("level", id % 100);
+					io.room("stats", stats -> {
+						for (int s = 0; s < 8; s++)
+							io.write("s" + s, id * s);
+					});
+				});
+			}
+		});
+	}
+
+	/**
+	 * Hides the output of soft errors, which would distort the measurement
+	 */
+	static void mute() {
+		PSFFileIO.showSoftErrors = false;
+	}
+
+	static void unmute() {
+		PSFFileIO.showSoftErrors = true;
+	}
+}
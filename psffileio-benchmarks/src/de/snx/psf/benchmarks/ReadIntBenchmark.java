@@ -0,0 +1,93 @@
+package de.snx.psf.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.snx.psf.PSFFileIO;
+
+/**
+ * {@link PSFFileIO#readInt(String)} and {@link PSFFileIO#readInt(String, int)}
+ * of existing and missing keys
+ *
+ * @author Sunnix
+ *
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ReadIntBenchmark {
+
+	@Param({ "1000", "100000" })
+	public int size;
+
+	private File file;
+	private PSFFileIO io;
+	private String[] keys, missingKeys;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		Benchmarks.mute();
+		file = Benchmarks.tempFile();
+		PSFFileIO writer = new PSFFileIO(file, "w");
+		writer.enterRoom("values");
+		keys = new String[size];
+		missingKeys = new String[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = "e" + i;
+			missingKeys[i] = "m" + i;
+			writer.write(keys[i], i);
+		}
+		writer.close();
+		// the values are read from the file, like in an application
+		io = new PSFFileIO(file, "r");
+		io.enterRoom("values");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		file.delete();
+		Benchmarks.unmute();
+	}
+
+	private int next() {
+		int i = next;
+		next = i + 1 == size ? 0 : i + 1;
+		return i;
+	}
+
+	@Benchmark
+	public int readInt() {
+		return io.readInt(keys[next()]);
+	}
+
+	@Benchmark
+	public int readIntWithDefault() {
+		return io.readInt(keys[next()], -1);
+	}
+
+	/**
+	 * The default is returned, the soft error is turned off
+	 */
+	@Benchmark
+	public int readMissingIntWithDefault() {
+		return io.readInt(missingKeys[next()], -1);
+	}
+}
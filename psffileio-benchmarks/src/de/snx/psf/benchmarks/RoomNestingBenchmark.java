@@ -0,0 +1,89 @@
+package de.snx.psf.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.snx.psf.PSFFileIO;
+import de.snx.psf.PSFPath;
+
+/**
+ * Reading a value through nested {@link PSFFileIO#room(String,
+ * java.util.function.Consumer)} calls of the depth, compared with a
+ * {@link PSFPath} to the same value
+ *
+ * @author Sunnix
+ *
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RoomNestingBenchmark {
+
+	@Param({ "1", "4", "16" })
+	public int depth;
+
+	private File file;
+	private PSFFileIO io;
+	private String[] names;
+	private PSFPath path;
+	private int value;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		file = Benchmarks.tempFile();
+		io = new PSFFileIO(file, "w");
+		names = new String[depth];
+		StringBuilder path = new StringBuilder();
+		for (int i = 0; i < depth; i++) {
+			names[i] = "r" + i;
+			io.enterRoom(names[i]);
+			// some neighbours, so the rooms are not found by chance
+			for (int n = 0; n < 8; n++)
+				io.write("v" + n, n);
+			path.append(names[i]).append('/');
+		}
+		io.write("v", depth);
+		io.exitAllRooms();
+		this.path = PSFPath.compile(path.append('v').toString());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		file.delete();
+	}
+
+	private void enter(int level) {
+		if (level == depth)
+			value = io.readInt("v");
+		else
+			io.room(names[level], name -> enter(level + 1));
+	}
+
+	@Benchmark
+	public int room() {
+		enter(0);
+		return value;
+	}
+
+	@Benchmark
+	public int path() {
+		return io.readInt(path);
+	}
+}
@@ -0,0 +1,115 @@
+package de.snx.psf.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.snx.psf.PSFFileIO;
+
+/**
+ * {@link PSFFileIO#write(String, int)} into a room, which already contains
+ * many values
+ *
+ * @author Sunnix
+ *
+ */
+@Fork(1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RoomWriteBenchmark {
+
+	private static final int APPENDS = 10_000;
+
+	@State(Scope.Thread)
+	public static class LargeRoom {
+
+		@Param({ "1000", "100000" })
+		public int size;
+
+		File file;
+		PSFFileIO io;
+		String[] keys;
+		int next;
+
+		@Setup(Level.Trial)
+		public void setUp() throws Exception {
+			file = Benchmarks.tempFile();
+			keys = new String[size];
+			for (int i = 0; i < size; i++)
+				keys[i] = "e" + i;
+			fill();
+		}
+
+		void fill() throws Exception {
+			io = new PSFFileIO(file, "w");
+			io.enterRoom("large");
+			for (int i = 0; i < size; i++)
+				io.write(keys[i], i);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			file.delete();
+		}
+	}
+
+	/**
+	 * A room of the size, which is filled again before every batch of appends
+	 */
+	@State(Scope.Thread)
+	public static class FreshRoom extends LargeRoom {
+
+		String[] newKeys;
+
+		@Setup(Level.Trial)
+		public void keys() {
+			newKeys = new String[APPENDS];
+			for (int i = 0; i < APPENDS; i++)
+				newKeys[i] = "n" + i;
+		}
+
+		@Setup(Level.Invocation)
+		public void refill() throws Exception {
+			fill();
+		}
+	}
+
+	/**
+	 * Replaces an existing value
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@Warmup(iterations = 3, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	public void overwrite(LargeRoom room) {
+		int i = room.next;
+		room.io.write(room.keys[i], i);
+		room.next = i + 1 == room.size ? 0 : i + 1;
+	}
+
+	/**
+	 * Adds new values at the end of the room
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OperationsPerInvocation(APPENDS)
+	@Warmup(iterations = 5)
+	@Measurement(iterations = 20)
+	public void append(FreshRoom room) {
+		for (int i = 0; i < APPENDS; i++)
+			room.io.write(room.newKeys[i], i);
+	}
+}
@@ -0,0 +1,102 @@
+package de.snx.psf.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.snx.psf.PSFFileIO;
+import de.snx.psf.PSFPath;
+
+/**
+ * Opening and closing a {@link PSFFileIO} with files of several sizes. Every
+ * profile has 11 values and a room with 8 of them
+ *
+ * @author Sunnix
+ *
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RoundTripBenchmark {
+
+	@Param({ "100", "10000", "100000" })
+	public int profiles;
+
+	private File file, out;
+	private PSFPath last;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		file = Benchmarks.tempFile();
+		out = Benchmarks.tempFile();
+		PSFFileIO io = new PSFFileIO(file, "w");
+		Benchmarks.writeProfiles(io, profiles);
+		io.close();
+		last = PSFPath.compile("profiles/p" + (profiles - 1) + "/hp");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		file.delete();
+		out.delete();
+	}
+
+	/**
+	 * Creates all profiles and writes them into a new file
+	 */
+	@Benchmark
+	public long write() throws Exception {
+		PSFFileIO io = new PSFFileIO(out, "w");
+		Benchmarks.writeProfiles(io, profiles);
+		io.close();
+		return out.length();
+	}
+
+	/**
+	 * Reads the whole file
+	 */
+	@Benchmark
+	public int read() throws Exception {
+		PSFFileIO io = new PSFFileIO(file, "r");
+		int hp = io.readInt(last);
+		io.close();
+		return hp;
+	}
+
+	/**
+	 * Reads only the last profile of the memory mapped file
+	 */
+	@Benchmark
+	public int readLazy() throws Exception {
+		PSFFileIO io = new PSFFileIO(file, "rm");
+		int hp = io.readInt(last);
+		io.close();
+		return hp;
+	}
+
+	/**
+	 * Reads the whole file and writes it again
+	 */
+	@Benchmark
+	public long readWrite() throws Exception {
+		PSFFileIO io = new PSFFileIO(file, "wr");
+		io.close();
+		return file.length();
+	}
+}
@@ -1,25 +1,46 @@
 package de.snx.psf;
 
 import java.awt.Component;
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Lock;
 import java.util.function.Consumer;
 
 import javax.swing.JFileChooser;
 
 import de.snx.psf.util.DataBuilder;
 import de.snx.psf.util.DataObject;
+import de.snx.psf.util.DataReader;
 import de.snx.psf.util.DataType;
+import de.snx.psf.util.DataWriter;
 import de.snx.psf.util.FileFormatException;
+import de.snx.psf.util.KeyTable;
 import de.snx.psf.util.ObjectRoom;
 import de.snx.psf.util.PSFFileFilter;
+import de.snx.psf.util.TextOutput;
 
 /**
  * <b>Pair Sorted Format File Input Output:</b><br>
@@ -56,10 +77,29 @@ import de.snx.psf.util.PSFFileFilter;
  * PSFFileIO.<br>
  * This method can be used to better understand the system.<br>
  * <br>
+ * One PSFFileIO can be shared by several threads. Every thread has its own
+ * current room, reads of different threads run at the same time and writes
+ * only lock the room they change. A {@link PSFPath} doesn't use the current
+ * room at all. Closing the PSFFileIO while other threads still write is not
+ * safe.<br>
+ * <br>
  * <br>
  * <b> UPDATE:</b> {@value PSFFileIO#UPDATED}<br>
  * -<br>
- * added alternate functions to define default return values on read failure<br>
+ * files are written in the binary format V4, the values are stored in their
+ * native size instead of text<br>
+ * lengths and whole numbers are written with a variable length, so small
+ * values take one byte and texts have no length limit<br>
+ * files of the version 3 can still be read<br>
+ * the mode "j" appends changes to a journal instead of rewriting the file<br>
+ * the rooms can be compressed, see {@link PSFFileIO#setCompressed(boolean)}<br>
+ * files end with an index of the rooms, so the mode "rm" finds a room without
+ * reading the rooms before it<br>
+ * the reading, writing and lookups can be measured, see {@link PSFMetrics}<br>
+ * binary data can be written as ByteBuffer, in the mode "rm" it is read without
+ * copying, see {@link PSFFileIO#readBytes(String)}<br>
+ * large texts can be written and read in chunks, see
+ * {@link PSFFileIO#openStringWriter(String)}<br>
  * 
  * @version {@value PSFFileIO#IDENTIFIER}<br>
  *          {@value PSFFileIO#VERSION}<br>
@@ -69,17 +109,26 @@ import de.snx.psf.util.PSFFileFilter;
  */
 public class PSFFileIO implements Closeable {
 
-	public static final String IDENTIFIER = "PSFFileIO V3";
+	public static final String IDENTIFIER = "PSFFileIO V4";
+	public static final String V3_IDENTIFIER = "PSFFileIO V3";
 	public static final String OLD_IDENTIFIER = "SNXFileIO V3";
-	public static final String VERSION = "3.1.6";
-	public static final String UPDATED = "22w24";
+	public static final String VERSION = "4.0.0";
+	public static final String UPDATED = "26w42";
 	public static final String CREATOR = "Sunnix";
 
 	private String fileCreator = "n/a";
 
-	private BufferedWriter writer;
-	private BufferedReader reader;
-	private BufferedInputStream stream;
+	/**
+	 * the file to write and the file, whose content was read or written the last
+	 * time, so unchanged rooms can be copied from it
+	 */
+	private File outFile, sourceFile;
+	private DataReader reader;
+
+	/**
+	 * charset of the text in files of the version 3
+	 */
+	private Charset textCharset = Charset.defaultCharset();
 
 	/**
 	 * 
@@ -89,29 +138,77 @@ public class PSFFileIO implements Closeable {
 	/**
 	 * topRoom is the basic top Tier room and is created automaticly
 	 */
-	private ObjectRoom topRoom;
-	private ObjectRoom currentRoom;
+	private final ObjectRoom topRoom;
+	/**
+	 * the current room of every thread, so threads can move through the rooms
+	 * independently
+	 */
+	private final ThreadLocal<ObjectRoom> currentRoom = new ThreadLocal<>();
 
 	/**
 	 * this variables are used to get information about the version format of the
 	 * file
 	 */
-	private static String f_version, f_updated, f_creator;
+	private String f_version, f_updated, f_creator;
 
 	/**
 	 * describes the version number of the read file divided into parts
 	 */
 	private int detailedV_0, detailedV_1, detailedV_2;
 
+	/**
+	 * read the rooms of the file only when they are used
+	 */
+	private boolean lazy;
+
+	/**
+	 * compress the rooms in the topRoom
+	 */
+	private volatile boolean compressed;
+
+	/**
+	 * the last published snapshot
+	 */
+	private volatile PSFSnapshot snapshot;
+
+	/**
+	 * the epoch of the last save, -1 if the data was never saved
+	 */
+	private long savedEpoch = -1;
+
+	/**
+	 * the dictionary of the keys in the file, which was read or written the last
+	 * time
+	 */
+	private KeyTable keys;
+
+	/**
+	 * receives the changes in the mode "j"
+	 */
+	private PSFJournal journal;
+
 	/**
 	 * show softerrors like missing fields
 	 */
-	public static boolean showSoftErrors;
+	public static volatile boolean showSoftErrors = true;
+
+	/**
+	 * receives the measurements of all PSFFileIOs, null to measure nothing
+	 */
+	public static volatile PSFMetrics metrics;
+
+	/**
+	 * read and write the rooms of files of the version 4 on several threads
+	 */
+	public static volatile boolean parallel = true;
+
+	/**
+	 * runs the asynchronous opens and saves, which have no executor
+	 */
+	private static volatile Executor asyncExecutor;
 
 	private PSFFileIO() {
-		showSoftErrors = true;
 		topRoom = new ObjectRoom("topRoom", null);
-		currentRoom = topRoom;
 	}
 
 	/**
@@ -122,7 +219,12 @@ public class PSFFileIO implements Closeable {
 	 * @param file file to read and/or write
 	 * @param mode "w" - write<br>
 	 *             "r" - read<br>
-	 *             "wr" - write and read
+	 *             "wr" - write and read<br>
+	 *             "rm" - read lazy from the memory mapped file, the rooms are only
+	 *             read when they are used<br>
+	 *             "j" - read and write with a journal, changes are appended to
+	 *             the journal of the file instead of rewriting the whole file,
+	 *             the journal is written into the file on close
 	 * @throws NullPointerException
 	 * @throws IOException
 	 * @throws IllegalArgumentException
@@ -138,19 +240,29 @@ public class PSFFileIO implements Closeable {
 		switch (mode) {
 		// write
 		case "w":
-			file = prepareWritingPath(file);
-			writer = new BufferedWriter(new FileWriter(file));
+			outFile = prepareWritingPath(file);
 			break;
 		// read
 		case "r":
-			reader = new BufferedReader(new FileReader(file));
+			reader = openReader(file);
 			readData();
 			break;
 		// write and read
 		case "wr":
-			writer = new BufferedWriter(new FileWriter(file));
-			reader = new BufferedReader(new FileReader(file));
+			outFile = file;
+			reader = openReader(file);
 			readData();
+			sourceFile = file;
+			break;
+		// read lazy
+		case "rm":
+			reader = mapReader(file);
+			lazy = true;
+			readData();
+			break;
+		// read and write with a journal
+		case "j":
+			openJournal(file);
 			break;
 		default:
 			throw new IllegalArgumentException("\"" + mode + "\" is no valible mode");
@@ -165,7 +277,12 @@ public class PSFFileIO implements Closeable {
 	 * @param file path of file to read and/or write
 	 * @param mode "w" - write<br>
 	 *             "r" - read<br>
-	 *             "wr" - write and read
+	 *             "wr" - write and read<br>
+	 *             "rm" - read lazy from the memory mapped file, the rooms are only
+	 *             read when they are used<br>
+	 *             "j" - read and write with a journal, changes are appended to
+	 *             the journal of the file instead of rewriting the whole file,
+	 *             the journal is written into the file on close
 	 * @throws NullPointerException
 	 * @throws IOException
 	 * @throws IllegalArgumentException
@@ -181,20 +298,30 @@ public class PSFFileIO implements Closeable {
 		switch (mode) {
 		// write
 		case "w":
-			file = prepareWritingPath(file);
-			writer = new BufferedWriter(new FileWriter(file));
+			outFile = prepareWritingPath(file);
 			break;
 		// read
 		case "r":
-			reader = new BufferedReader(new FileReader(file));
+			reader = openReader(file);
 			readData();
 			break;
 		// write and read
 		case "wr":
-			writer = new BufferedWriter(new FileWriter(file));
-			reader = new BufferedReader(new FileReader(file));
+			outFile = file;
+			reader = openReader(file);
+			readData();
+			sourceFile = file;
+			break;
+		// read lazy
+		case "rm":
+			reader = mapReader(file);
+			lazy = true;
 			readData();
 			break;
+		// read and write with a journal
+		case "j":
+			openJournal(file);
+			break;
 		default:
 			throw new IllegalArgumentException("\"" + mode + "\" is no valible mode");
 		}
@@ -221,10 +348,10 @@ public class PSFFileIO implements Closeable {
 			throw new IOException("File in is a Directory");
 		if (out.isDirectory())
 			throw new IOException("File out file is a Directory");
-		out = prepareWritingPath(out);
-		writer = new BufferedWriter(new FileWriter(out));
-		reader = new BufferedReader(new FileReader(in));
+		outFile = prepareWritingPath(out);
+		reader = openReader(in);
 		readData();
+		sourceFile = in;
 	}
 
 	/**
@@ -239,7 +366,8 @@ public class PSFFileIO implements Closeable {
 	public PSFFileIO(String pathname) throws IOException, FileFormatException {
 		this();
 		checkFilePath(pathname);
-		stream = new BufferedInputStream(getClass().getResourceAsStream("/" + pathname));
+		reader = new DataReader(Channels.newChannel(getClass().getResourceAsStream("/" + pathname)));
+		textCharset = StandardCharsets.ISO_8859_1;
 		readData();
 	}
 
@@ -257,11 +385,81 @@ public class PSFFileIO implements Closeable {
 			throw new NullPointerException("File out is null");
 		if (out.isDirectory())
 			throw new IOException("File out file is a Directory");
-		out = prepareWritingPath(out);
-		writer = new BufferedWriter(new FileWriter(out));
+		outFile = prepareWritingPath(out);
 		readData();
 	}
 
+	/**
+	 * Opens the file in the mode "wr" without blocking the calling thread
+	 * 
+	 * @param path file to read and write
+	 * @return the future of the PSFFileIO, which fails with the exception of the
+	 *         constructor
+	 * @see #openAsync(Path, String, Executor)
+	 */
+	public static CompletableFuture<PSFFileIO> openAsync(Path path) {
+		return openAsync(path, "wr");
+	}
+
+	/**
+	 * Opens the file without blocking the calling thread. The file is read by a
+	 * virtual thread, if the Java version has them, or by a thread of a shared
+	 * pool
+	 * 
+	 * @param path file to read and/or write
+	 * @param mode the mode like in {@link #PSFFileIO(File, String)}
+	 */
+	public static CompletableFuture<PSFFileIO> openAsync(Path path, String mode) {
+		return openAsync(path, mode, asyncExecutor());
+	}
+
+	/**
+	 * Opens the file without blocking the calling thread
+	 * 
+	 * @param path     file to read and/or write
+	 * @param mode     the mode like in {@link #PSFFileIO(File, String)}
+	 * @param executor runs the reading of the file
+	 * @return the future of the PSFFileIO, which fails with the exception of the
+	 *         constructor
+	 */
+	public static CompletableFuture<PSFFileIO> openAsync(Path path, String mode, Executor executor) {
+		if (path == null)
+			throw new NullPointerException("Path is null");
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return new PSFFileIO(path.toFile(), mode);
+			} catch (IOException | FileFormatException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	/**
+	 * @return the executor of the asynchronous methods, virtual threads if they
+	 *         exist, otherwise a pool of daemon threads
+	 */
+	private static Executor asyncExecutor() {
+		Executor executor = asyncExecutor;
+		if (executor != null)
+			return executor;
+		synchronized (PSFFileIO.class) {
+			if (asyncExecutor == null) {
+				try {
+					// Java 21 and newer
+					asyncExecutor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+							.invoke(null);
+				} catch (ReflectiveOperationException e) {
+					asyncExecutor = Executors.newCachedThreadPool(task -> {
+						Thread thread = new Thread(task, "PSFFileIO I/O");
+						thread.setDaemon(true);
+						return thread;
+					});
+				}
+			}
+			return asyncExecutor;
+		}
+	}
+
 	/**
 	 * 
 	 * @param path Filepath
@@ -276,7 +474,7 @@ public class PSFFileIO implements Closeable {
 				path += ".psf";
 		else if (path.lastIndexOf('/') > point)
 			path += ".psf";
-		String characters = "#%&{}\\<>*?$!'\":+-`|=";
+		String characters = "#%&{}\\<>*?$!'\":+-\u00B4`|=";
 		for (int i = 0; i < characters.length(); i++)
 			if (path.contains(Character.toString(characters.charAt(i))))
 				throw new FileFormatException("Pathname contains Illegal character");
@@ -298,6 +496,82 @@ public class PSFFileIO implements Closeable {
 		return file;
 	}
 
+	/**
+	 * @throws IOException if the file has a journal, which is not compacted
+	 */
+	private DataReader openReader(File file) throws IOException {
+		PSFJournal.checkNoJournal(file);
+		return new DataReader(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+	}
+
+	/**
+	 * Maps the whole file into the memory, so the rooms can be read from any
+	 * position of the file
+	 * 
+	 * @throws IOException if the file has a journal, which is not compacted
+	 */
+	private DataReader mapReader(File file) throws IOException {
+		PSFJournal.checkNoJournal(file);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("The file is too large to be mapped");
+			return new DataReader(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Reads the file and applies its journal, all following changes are written
+	 * into the journal
+	 */
+	private void openJournal(File file) throws IOException, FileFormatException {
+		file = prepareWritingPath(file);
+		if (file.length() > 0) {
+			reader = new DataReader(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+			readData();
+			reader.close();
+			reader = null;
+		}
+		journal = new PSFJournal(this, topRoom, file);
+	}
+
+	/**
+	 * In the mode "j" the journal is compacted into the file in the background,
+	 * when it grows bigger than the limit. The default limit is 64 MB
+	 *
+	 * @param bytes the size of the journal, which starts a compaction
+	 * @return this
+	 */
+	public PSFFileIO setJournalLimit(long bytes) {
+		if (journal == null)
+			throw new IllegalStateException("The PSFFileIO has no journal, the mode \"j\" is needed");
+		journal.setLimit(bytes);
+		return this;
+	}
+
+	/**
+	 * Compresses every room in the topRoom on its own with Deflate, when the
+	 * file is written the next time. The rooms can still be read lazy, only the
+	 * room, which is used, is decompressed. Data objects directly in the topRoom
+	 * are not compressed.<br>
+	 * A file which is read keeps its mode.
+	 *
+	 * @param compressed <b>true</b> to compress the rooms
+	 * @return this
+	 */
+	public synchronized PSFFileIO setCompressed(boolean compressed) {
+		if (this.compressed != compressed) {
+			this.compressed = compressed;
+			sourceFile = null; // the old rooms are encoded in the other mode
+			savedEpoch = -1;
+		}
+		return this;
+	}
+
+	public boolean isCompressed() {
+		return compressed;
+	}
+
+
 	/**
 	 * get into room<br>
 	 * if the room dos'nt exists, the room will be created
@@ -311,16 +585,7 @@ public class PSFFileIO implements Closeable {
 			new Exception("topRoom is no valid room").printStackTrace();
 			return;
 		}
-		ArrayList<ObjectRoom> childs = currentRoom.getChilds();
-		for (ObjectRoom room : childs) {
-			if (room.getName().equals(name)) {
-				currentRoom = room;
-				return;
-			}
-		}
-		ObjectRoom newRoom = new ObjectRoom(name, currentRoom);
-		childs.add(newRoom);
-		currentRoom = newRoom;
+		currentRoom.set(currentRoom().getOrCreateChild(name));
 	}
 
 	/**
@@ -330,16 +595,25 @@ public class PSFFileIO implements Closeable {
 	 */
 	@Deprecated
 	public void exitRoom() {
-		if (currentRoom == topRoom)
+		ObjectRoom room = currentRoom();
+		if (room == topRoom)
 			return;
-		currentRoom = currentRoom.getParent();
+		currentRoom.set(room.getParent());
 	}
 
 	/**
 	 * exit all rooms to the top level
 	 */
 	public void exitAllRooms() {
-		currentRoom = topRoom;
+		currentRoom.remove();
+	}
+
+	/**
+	 * @return the current room of this thread
+	 */
+	private ObjectRoom currentRoom() {
+		ObjectRoom room = currentRoom.get();
+		return room == null ? topRoom : room;
 	}
 
 	public void room(String name, Consumer<String> function) {
@@ -350,47 +624,74 @@ public class PSFFileIO implements Closeable {
 
 	public void write(String key, String s) {
 		checkValidKey(key);
-		currentRoom.write(key, DataType.STRING, s);
+		currentRoom().write(key, DataType.STRING, s);
 	}
 
 	public void write(String key, char c) {
 		checkValidKey(key);
-		currentRoom.write(key, DataType.CHARACTER, Character.toString(c));
+		currentRoom().write(new DataObject(key, c));
 	}
 
 	public void write(String key, byte b) {
 		checkValidKey(key);
-		currentRoom.write(key, DataType.BYTE, Byte.toString(b));
+		currentRoom().write(new DataObject(key, b));
 	}
 
 	public void write(String key, short s) {
 		checkValidKey(key);
-		currentRoom.write(key, DataType.SHORT, Short.toString(s));
+		currentRoom().write(new DataObject(key, s));
 	}
 
 	public void write(String key, int i) {
 		checkValidKey(key);
-		currentRoom.write(key, DataType.INTEGER, Integer.toString(i));
+		currentRoom().write(new DataObject(key, i));
 	}
 
 	public void write(String key, long l) {
 		checkValidKey(key);
-		currentRoom.write(key, DataType.LONG, Long.toString(l));
+		currentRoom().write(new DataObject(key, l));
 	}
 
 	public void write(String key, float f) {
 		checkValidKey(key);
-		currentRoom.write(key, DataType.FLOAT, Float.toString(f));
+		currentRoom().write(new DataObject(key, f));
 	}
 
 	public void write(String key, double d) {
 		checkValidKey(key);
-		currentRoom.write(key, DataType.DOUBLE, Double.toString(d));
+		currentRoom().write(new DataObject(key, d));
 	}
 
 	public void write(String key, boolean b) {
 		checkValidKey(key);
-		currentRoom.write(key, DataType.BOOLEAN, Boolean.toString(b));
+		currentRoom().write(new DataObject(key, b));
+	}
+
+	/**
+	 * Writes the bytes from the position to the limit as binary data, they are
+	 * copied, the position of the data isn't changed
+	 */
+	public void write(String key, ByteBuffer data) {
+		checkValidKey(key);
+		currentRoom().write(new DataObject(key, copy(data)));
+	}
+
+	/**
+	 * Opens a Writer for a large text, the text is written in chunks as UTF-8
+	 * without creating the whole String and is put into the current room, when
+	 * the Writer is closed
+	 */
+	public Writer openStringWriter(String key) {
+		checkValidKey(key);
+		ObjectRoom room = currentRoom();
+		return new OutputStreamWriter(new TextOutput(key, room::write), StandardCharsets.UTF_8);
+	}
+
+	private static ByteBuffer copy(ByteBuffer data) {
+		ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+		copy.put(data.duplicate());
+		copy.flip();
+		return copy;
 	}
 
 	/**
@@ -401,111 +702,291 @@ public class PSFFileIO implements Closeable {
 	 */
 	public void write(String key, ArrayList<?> list) throws Exception {
 		checkValidKey(key);
-		enterRoom(key + "*");
-		currentRoom.write("s", DataType.INTEGER, Integer.toString(list.size()));
-		if (list.size() > 0) {
-			DataType arrayType = checkType(list.get(0));
-			for (int i = 0; i < list.size(); i++) {
-				switch (arrayType) {
-				case STRING:
-					currentRoom.write("e" + i, DataType.STRING, list.get(i).toString());
-					break;
-				case CHARACTER:
-					currentRoom.write("e" + i, DataType.CHARACTER, list.get(i).toString());
-					break;
-				case BYTE:
-					currentRoom.write("e" + i, DataType.BYTE, list.get(i).toString());
-					break;
-				case SHORT:
-					currentRoom.write("e" + i, DataType.SHORT, list.get(i).toString());
-					break;
-				case INTEGER:
-					currentRoom.write("e" + i, DataType.INTEGER, list.get(i).toString());
-					break;
-				case LONG:
-					currentRoom.write("e" + i, DataType.LONG, list.get(i).toString());
-					break;
-				case FLOAT:
-					currentRoom.write("e" + i, DataType.FLOAT, list.get(i).toString());
-					break;
-				case DOUBLE:
-					currentRoom.write("e" + i, DataType.DOUBLE, list.get(i).toString());
-					break;
-				case BOOLEAN:
-					currentRoom.write("e" + i, DataType.BOOLEAN, list.get(i).toString());
-					break;
-				default:
-					throw new Exception("Something unexpected happened");// this should never happen
-				}
-			}
+		DataType arrayType = list.isEmpty() ? DataType.STRING : checkType(list.get(0));
+		int size = list.size();
+		switch (arrayType) {
+		case STRING:
+			String[] strings = new String[size];
+			for (int i = 0; i < size; i++)
+				strings[i] = list.get(i).toString();
+			writeArray(new DataObject(key + "*", strings));
+			break;
+		case CHARACTER:
+			char[] chars = new char[size];
+			for (int i = 0; i < size; i++)
+				chars[i] = list.get(i).toString().charAt(0);
+			writeArray(new DataObject(key + "*", chars));
+			break;
+		case BYTE:
+			byte[] bytes = new byte[size];
+			for (int i = 0; i < size; i++)
+				bytes[i] = ((Number) list.get(i)).byteValue();
+			writeArray(new DataObject(key + "*", bytes));
+			break;
+		case SHORT:
+			short[] shorts = new short[size];
+			for (int i = 0; i < size; i++)
+				shorts[i] = ((Number) list.get(i)).shortValue();
+			writeArray(new DataObject(key + "*", shorts));
+			break;
+		case INTEGER:
+			int[] ints = new int[size];
+			for (int i = 0; i < size; i++)
+				ints[i] = ((Number) list.get(i)).intValue();
+			writeArray(new DataObject(key + "*", ints));
+			break;
+		case LONG:
+			long[] longs = new long[size];
+			for (int i = 0; i < size; i++)
+				longs[i] = ((Number) list.get(i)).longValue();
+			writeArray(new DataObject(key + "*", longs));
+			break;
+		case FLOAT:
+			float[] floats = new float[size];
+			for (int i = 0; i < size; i++)
+				floats[i] = ((Number) list.get(i)).floatValue();
+			writeArray(new DataObject(key + "*", floats));
+			break;
+		case DOUBLE:
+			double[] doubles = new double[size];
+			for (int i = 0; i < size; i++)
+				doubles[i] = ((Number) list.get(i)).doubleValue();
+			writeArray(new DataObject(key + "*", doubles));
+			break;
+		case BOOLEAN:
+			boolean[] booleans = new boolean[size];
+			for (int i = 0; i < size; i++)
+				booleans[i] = Boolean.parseBoolean(list.get(i).toString());
+			writeArray(new DataObject(key + "*", booleans));
+			break;
+		default:
+			throw new Exception("Something unexpected happened");// this should never happen
 		}
-		exitRoom();
+	}
+
+	/**
+	 * Arrays are stored as one packed DataObject with the key ending with *. A
+	 * room of the old array format with the same name is replaced
+	 */
+	private void writeArray(DataObject array) {
+		String key = array.getKey().substring(0, array.getKey().length() - 1);
+		ObjectRoom room = currentRoom();
+		room.removeChild(key + "*");
+		room.removeChild(key + "_array");
+		room.addDataObject(array);
 	}
 
 	public void write(String key, String[] array) throws Exception {
-		for (int i = 0; i < array.length; i++)
-			if (array[i] == null)
-				array[i] = "";
-		ArrayList<String> list = new ArrayList<>();
-		for (String e : array)
-			list.add(e);
-		write(key, list);
+		checkValidKey(key);
+		String[] copy = array.clone();
+		for (int i = 0; i < copy.length; i++)
+			if (copy[i] == null)
+				copy[i] = "";
+		writeArray(new DataObject(key + "*", copy));
 	}
 
 	public void write(String key, char[] array) throws Exception {
-		ArrayList<Character> list = new ArrayList<>();
-		for (char e : array)
-			list.add(e);
-		write(key, list);
+		checkValidKey(key);
+		writeArray(new DataObject(key + "*", array.clone()));
 	}
 
 	public void write(String key, byte[] array) throws Exception {
-		ArrayList<Byte> list = new ArrayList<>();
-		for (byte e : array)
-			list.add(e);
-		write(key, list);
+		checkValidKey(key);
+		writeArray(new DataObject(key + "*", array.clone()));
 	}
 
 	public void write(String key, short[] array) throws Exception {
-		ArrayList<Short> list = new ArrayList<>();
-		for (short e : array)
-			list.add(e);
-		write(key, list);
+		checkValidKey(key);
+		writeArray(new DataObject(key + "*", array.clone()));
 	}
 
 	public void write(String key, int[] array) throws Exception {
-		ArrayList<Integer> list = new ArrayList<>();
-		for (int e : array)
-			list.add(e);
-		write(key, list);
+		checkValidKey(key);
+		writeArray(new DataObject(key + "*", array.clone()));
 	}
 
 	public void write(String key, long[] array) throws Exception {
-		ArrayList<Long> list = new ArrayList<>();
-		for (long e : array)
-			list.add(e);
-		write(key, list);
+		checkValidKey(key);
+		writeArray(new DataObject(key + "*", array.clone()));
 	}
 
 	public void write(String key, float[] array) throws Exception {
-		ArrayList<Float> list = new ArrayList<>();
-		for (float e : array)
-			list.add(e);
-		write(key, list);
+		checkValidKey(key);
+		writeArray(new DataObject(key + "*", array.clone()));
 	}
 
 	public void write(String key, double[] array) throws Exception {
-		ArrayList<Double> list = new ArrayList<>();
-		for (double e : array)
-			list.add(e);
-		write(key, list);
+		checkValidKey(key);
+		writeArray(new DataObject(key + "*", array.clone()));
 	}
 
 	public void write(String key, boolean[] array) throws Exception {
-		ArrayList<Boolean> list = new ArrayList<>();
-		for (boolean e : array)
-			list.add(e);
-		write(key, list);
+		checkValidKey(key);
+		writeArray(new DataObject(key + "*", array.clone()));
+	}
+
+	/*
+	 * Writing and reading with a compiled path, independent of the current room
+	 */
+
+	public void write(PSFPath path, String s) {
+		path.resolve(topRoom, true).write(path.getKey(), DataType.STRING, s);
+	}
+
+	public void write(PSFPath path, char c) {
+		path.resolve(topRoom, true).write(new DataObject(path.getKey(), c));
+	}
+
+	public void write(PSFPath path, byte b) {
+		path.resolve(topRoom, true).write(new DataObject(path.getKey(), b));
+	}
+
+	public void write(PSFPath path, short s) {
+		path.resolve(topRoom, true).write(new DataObject(path.getKey(), s));
+	}
+
+	public void write(PSFPath path, int i) {
+		path.resolve(topRoom, true).write(new DataObject(path.getKey(), i));
+	}
+
+	public void write(PSFPath path, long l) {
+		path.resolve(topRoom, true).write(new DataObject(path.getKey(), l));
+	}
+
+	public void write(PSFPath path, float f) {
+		path.resolve(topRoom, true).write(new DataObject(path.getKey(), f));
+	}
+
+	public void write(PSFPath path, double d) {
+		path.resolve(topRoom, true).write(new DataObject(path.getKey(), d));
+	}
+
+	public void write(PSFPath path, boolean b) {
+		path.resolve(topRoom, true).write(new DataObject(path.getKey(), b));
+	}
+
+	public void write(PSFPath path, ByteBuffer data) {
+		path.resolve(topRoom, true).write(new DataObject(path.getKey(), copy(data)));
+	}
+
+	public String readString(PSFPath path) {
+		return readString(path, "");
+	}
+
+	public String readString(PSFPath path, String defaultValue) {
+		DataObject dO = path.getDataObject(topRoom);
+		if (dO == null)
+			return defaultValue;
+		else
+			return dO.getDataAsString();
+	}
+
+	public char readChar(PSFPath path) {
+		return readChar(path, ' ');
+	}
+
+	public char readChar(PSFPath path, char defaultValue) {
+		DataObject dO = path.getDataObject(topRoom);
+		if (dO == null)
+			return defaultValue;
+		else
+			return dO.getDataAsCharacter();
+	}
+
+	public byte readByte(PSFPath path) {
+		return readByte(path, (byte) 0);
+	}
+
+	public byte readByte(PSFPath path, byte defaultValue) {
+		DataObject dO = path.getDataObject(topRoom);
+		if (dO == null)
+			return defaultValue;
+		else
+			return dO.getDataAsByte();
+	}
+
+	public short readShort(PSFPath path) {
+		return readShort(path, (short) 0);
+	}
+
+	public short readShort(PSFPath path, short defaultValue) {
+		DataObject dO = path.getDataObject(topRoom);
+		if (dO == null)
+			return defaultValue;
+		else
+			return dO.getDataAsShort();
+	}
+
+	public int readInt(PSFPath path) {
+		return readInt(path, 0);
+	}
+
+	public int readInt(PSFPath path, int defaultValue) {
+		DataObject dO = path.getDataObject(topRoom);
+		if (dO == null)
+			return defaultValue;
+		else
+			return dO.getDataAsInteger();
+	}
+
+	public long readLong(PSFPath path) {
+		return readLong(path, 0L);
+	}
+
+	public long readLong(PSFPath path, long defaultValue) {
+		DataObject dO = path.getDataObject(topRoom);
+		if (dO == null)
+			return defaultValue;
+		else
+			return dO.getDataAsLong();
+	}
+
+	public float readFloat(PSFPath path) {
+		return readFloat(path, 0f);
+	}
+
+	public float readFloat(PSFPath path, float defaultValue) {
+		DataObject dO = path.getDataObject(topRoom);
+		if (dO == null)
+			return defaultValue;
+		else
+			return dO.getDataAsFloat();
+	}
+
+	public double readDouble(PSFPath path) {
+		return readDouble(path, 0d);
+	}
+
+	public double readDouble(PSFPath path, double defaultValue) {
+		DataObject dO = path.getDataObject(topRoom);
+		if (dO == null)
+			return defaultValue;
+		else
+			return dO.getDataAsDouble();
+	}
+
+	public boolean readBoolean(PSFPath path) {
+		return readBoolean(path, false);
+	}
+
+	public boolean readBoolean(PSFPath path, boolean defaultValue) {
+		DataObject dO = path.getDataObject(topRoom);
+		if (dO == null)
+			return defaultValue;
+		else
+			return dO.getDataAsBoolean();
+	}
+
+	public ByteBuffer readBytes(PSFPath path) {
+		return readBytes(path, null);
+	}
+
+	public ByteBuffer readBytes(PSFPath path, ByteBuffer defaultValue) {
+		DataObject dO = path.getDataObject(topRoom);
+		if (dO == null)
+			return defaultValue;
+		else
+			return dO.getDataAsBinary();
 	}
 
 	public String readString(String key) {
@@ -513,7 +994,7 @@ public class PSFFileIO implements Closeable {
 	}
 
 	public String readString(String key, String defaultValue) {
-		DataObject dO = currentRoom.getDataObject(key);
+		DataObject dO = currentRoom().getDataObject(key);
 		if (dO == null)
 			return defaultValue;
 		else
@@ -525,7 +1006,7 @@ public class PSFFileIO implements Closeable {
 	}
 
 	public char readChar(String key, char defaultValue) {
-		DataObject dO = currentRoom.getDataObject(key);
+		DataObject dO = currentRoom().getDataObject(key);
 		if (dO == null)
 			return defaultValue;
 		else
@@ -537,7 +1018,7 @@ public class PSFFileIO implements Closeable {
 	}
 
 	public byte readByte(String key, byte defaultValue) {
-		DataObject dO = currentRoom.getDataObject(key);
+		DataObject dO = currentRoom().getDataObject(key);
 		if (dO == null)
 			return defaultValue;
 		else
@@ -549,7 +1030,7 @@ public class PSFFileIO implements Closeable {
 	}
 
 	public short readShort(String key, short defaultValue) {
-		DataObject dO = currentRoom.getDataObject(key);
+		DataObject dO = currentRoom().getDataObject(key);
 		if (dO == null)
 			return defaultValue;
 		else
@@ -561,7 +1042,7 @@ public class PSFFileIO implements Closeable {
 	}
 
 	public int readInt(String key, int defaultValue) {
-		DataObject dO = currentRoom.getDataObject(key);
+		DataObject dO = currentRoom().getDataObject(key);
 		if (dO == null)
 			return defaultValue;
 		else
@@ -573,7 +1054,7 @@ public class PSFFileIO implements Closeable {
 	}
 
 	public long readLong(String key, long defaultValue) {
-		DataObject dO = currentRoom.getDataObject(key);
+		DataObject dO = currentRoom().getDataObject(key);
 		if (dO == null)
 			return defaultValue;
 		else
@@ -585,7 +1066,7 @@ public class PSFFileIO implements Closeable {
 	}
 
 	public float readFloat(String key, float defaultValue) {
-		DataObject dO = currentRoom.getDataObject(key);
+		DataObject dO = currentRoom().getDataObject(key);
 		if (dO == null)
 			return defaultValue;
 		else
@@ -597,7 +1078,7 @@ public class PSFFileIO implements Closeable {
 	}
 
 	public double readDouble(String key, double defaultValue) {
-		DataObject dO = currentRoom.getDataObject(key);
+		DataObject dO = currentRoom().getDataObject(key);
 		if (dO == null)
 			return defaultValue;
 		else
@@ -609,15 +1090,63 @@ public class PSFFileIO implements Closeable {
 	}
 
 	public boolean readBoolean(String key, boolean defaultValue) {
-		DataObject dO = currentRoom.getDataObject(key);
+		DataObject dO = currentRoom().getDataObject(key);
 		if (dO == null)
 			return defaultValue;
 		else
 			return dO.getDataAsBoolean();
 	}
 
+	/**
+	 * Reads binary data. In the mode "rm" the bytes are not copied, the buffer is
+	 * a view of the mapped file
+	 *
+	 * @return a read-only buffer of the bytes or null
+	 */
+	public ByteBuffer readBytes(String key) {
+		return readBytes(key, null);
+	}
+
+	public ByteBuffer readBytes(String key, ByteBuffer defaultValue) {
+		DataObject dO = currentRoom().getDataObject(key);
+		if (dO == null)
+			return defaultValue;
+		else
+			return dO.getDataAsBinary();
+	}
+
+	/**
+	 * Reads a large text in chunks, a text, which is read from the file and not
+	 * decoded yet, is decoded while it is read
+	 * 
+	 * @return a Reader of the text or null
+	 */
+	public Reader openStringReader(String key) {
+		DataObject dO = currentRoom().getDataObject(key);
+		if (dO == null)
+			return null;
+		else
+			return dO.openReader();
+	}
+
+	/**
+	 * @return the packed array of the key, or null if the array is stored in the
+	 *         old room format
+	 */
+	private DataObject readPackedArray(String key) {
+		DataObject array = currentRoom().findDataObject(key + "*");
+		return array != null && array.isArray() ? array : null;
+	}
+
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public ArrayList<?> readArrayList(String key) throws Exception {
+		DataObject packed = readPackedArray(key);
+		if (packed != null) {
+			ArrayList<Object> packedList = new ArrayList<>(packed.getArrayLength());
+			for (int i = 0; i < packed.getArrayLength(); i++)
+				packedList.add(Array.get(packed.getArray(), i));
+			return packedList;
+		}
 		ArrayList list;
 		// to cover old files
 		String keySuffix, keySize, keyElement;
@@ -631,9 +1160,9 @@ public class PSFFileIO implements Closeable {
 			keyElement = "e";
 		}
 		enterRoom(key + keySuffix);
-		int arraySize = currentRoom.getDataObject(keySize).getDataAsInteger();
+		int arraySize = currentRoom().getDataObject(keySize).getDataAsInteger();
 		if (arraySize > 0) {
-			DataType type = currentRoom.getDataObject(keyElement + "0").getType();
+			DataType type = currentRoom().getDataObject(keyElement + "0").getType();
 			switch (type) {
 			case STRING:
 				list = new ArrayList<String>();
@@ -690,15 +1219,21 @@ public class PSFFileIO implements Closeable {
 	}
 
 	public String[] readStringArray(String key) throws Exception {
+		DataObject packed = readPackedArray(key);
+		if (packed != null)
+			return packed.getArrayLength() == 0 ? new String[0] : packed.getDataAsStringArray().clone();
 		String[] raw = readArrayList(key).toArray(new String[0]);
 		if (raw.length > 0)
 			if (checkType(raw[0]).equals(DataType.STRING) == false)
 				throw new IllegalArgumentException(
 						"the array is a " + checkType(raw[0] + " and not compatible with " + DataType.STRING));
-		return (String[]) raw;
+		return raw;
 	}
 
 	public char[] readCharArray(String key) throws Exception {
+		DataObject packed = readPackedArray(key);
+		if (packed != null)
+			return packed.getArrayLength() == 0 ? new char[0] : packed.getDataAsCharacterArray().clone();
 		Object[] raw = readArrayList(key).toArray();
 		if (raw.length > 0)
 			if (checkType(raw[0]).equals(DataType.CHARACTER) == false)
@@ -712,6 +1247,9 @@ public class PSFFileIO implements Closeable {
 	}
 
 	public byte[] readByteArray(String key) throws Exception {
+		DataObject packed = readPackedArray(key);
+		if (packed != null)
+			return packed.getArrayLength() == 0 ? new byte[0] : packed.getDataAsByteArray().clone();
 		Object[] raw = readArrayList(key).toArray();
 		if (raw.length > 0)
 			if (checkType(raw[0]).equals(DataType.BYTE) == false)
@@ -725,6 +1263,9 @@ public class PSFFileIO implements Closeable {
 	}
 
 	public short[] readShortArray(String key) throws Exception {
+		DataObject packed = readPackedArray(key);
+		if (packed != null)
+			return packed.getArrayLength() == 0 ? new short[0] : packed.getDataAsShortArray().clone();
 		Object[] raw = readArrayList(key).toArray();
 		if (raw.length > 0)
 			if (checkType(raw[0]).equals(DataType.SHORT) == false)
@@ -738,6 +1279,9 @@ public class PSFFileIO implements Closeable {
 	}
 
 	public int[] readIntArray(String key) throws Exception {
+		DataObject packed = readPackedArray(key);
+		if (packed != null)
+			return packed.getArrayLength() == 0 ? new int[0] : packed.getDataAsIntegerArray().clone();
 		Object[] raw = readArrayList(key).toArray();
 		if (raw.length > 0)
 			if (checkType(raw[0]).equals(DataType.INTEGER) == false)
@@ -751,6 +1295,9 @@ public class PSFFileIO implements Closeable {
 	}
 
 	public long[] readLongArray(String key) throws Exception {
+		DataObject packed = readPackedArray(key);
+		if (packed != null)
+			return packed.getArrayLength() == 0 ? new long[0] : packed.getDataAsLongArray().clone();
 		Object[] raw = readArrayList(key).toArray();
 		if (raw.length > 0)
 			if (checkType(raw[0]).equals(DataType.LONG) == false)
@@ -764,6 +1311,9 @@ public class PSFFileIO implements Closeable {
 	}
 
 	public float[] readFloatArray(String key) throws Exception {
+		DataObject packed = readPackedArray(key);
+		if (packed != null)
+			return packed.getArrayLength() == 0 ? new float[0] : packed.getDataAsFloatArray().clone();
 		Object[] raw = readArrayList(key).toArray();
 		if (raw.length > 0)
 			if (checkType(raw[0]).equals(DataType.FLOAT) == false)
@@ -777,6 +1327,9 @@ public class PSFFileIO implements Closeable {
 	}
 
 	public double[] readDoubleArray(String key) throws Exception {
+		DataObject packed = readPackedArray(key);
+		if (packed != null)
+			return packed.getArrayLength() == 0 ? new double[0] : packed.getDataAsDoubleArray().clone();
 		Object[] raw = readArrayList(key).toArray();
 		if (raw.length > 0)
 			if (checkType(raw[0]).equals(DataType.DOUBLE) == false)
@@ -790,6 +1343,9 @@ public class PSFFileIO implements Closeable {
 	}
 
 	public boolean[] readBooleanArray(String key) throws Exception {
+		DataObject packed = readPackedArray(key);
+		if (packed != null)
+			return packed.getArrayLength() == 0 ? new boolean[0] : packed.getDataAsBooleanArray().clone();
 		Object[] raw = readArrayList(key).toArray();
 		if (raw.length > 0)
 			if (checkType(raw[0]).equals(DataType.BOOLEAN) == false)
@@ -826,17 +1382,44 @@ public class PSFFileIO implements Closeable {
 	}
 
 	private void readData() throws IOException, FileFormatException {
-		if (stream != null)
-			builder = new DataBuilder(this, stream);
-		else if (reader != null)
-			builder = new DataBuilder(this, reader);
-		else
-			throw new NullPointerException("No reader or stream is defined");
+		if (reader == null)
+			throw new NullPointerException("No reader is defined");
+		PSFMetrics metrics = PSFFileIO.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		builder = new DataBuilder(this, reader);
 		// prevent reading other files format with errors
-		String datatext = builder.getDataText();
-		if (!datatext.equals(IDENTIFIER) && !datatext.equals(OLD_IDENTIFIER))
-			throw new FileFormatException("The file does not correspond to the PSFFileIO format");
-		f_version = checkVersion(builder.getDataText().substring("Version: ".length()));
+		String[] header = builder.getHeader(textCharset);
+		setFileVersion(checkVersion(header[0]));
+		f_updated = header[1];
+		f_creator = header[2];
+		fileCreator = header[3];
+		compressed = builder.isCompressed();
+		keys = builder.getKeys();
+		if (builder.isBinary()) {
+			if (builder.getTag() != DataBuilder.TAG_ROOM)
+				throw new FileFormatException("The file does not start with the topRoom");
+			builder.getRoomStart();// topRoom already exists
+			if (lazy && builder.isIndexed())
+				topRoom.setIndex(builder.getIndex(), builder);
+			if (lazy)
+				topRoom.readLazy(builder, builder.position());
+			else {
+				builder.setParallel(parallel && ForkJoinPool.getCommonPoolParallelism() > 1);
+				topRoom.readData(builder);
+			}
+		} else {
+			builder.getDataText();// clear topRoom dataText cause it already exists
+			topRoom.readData(builder);
+			builder.getDataText();// clear topRoom's end }
+		}
+		if (metrics != null) {
+			metrics.documentParsed(System.nanoTime() - start);
+			metrics.bytesRead(builder.position());
+		}
+	}
+
+	private void setFileVersion(String version) {
+		f_version = version;
 		String[] vNum = f_version.split("[.]");
 		if (vNum.length > 0)
 			detailedV_0 = Integer.parseInt(vNum[0]);
@@ -844,12 +1427,6 @@ public class PSFFileIO implements Closeable {
 			detailedV_1 = Integer.parseInt(vNum[1]);
 		if (vNum.length > 2)
 			detailedV_2 = Integer.parseInt(vNum[2]);
-		f_updated = builder.getDataText().substring("Updated: ".length());
-		f_creator = builder.getDataText().substring("Creator: ".length());
-		fileCreator = builder.getDataText().substring("File Creator: ".length());
-		builder.getDataText();// clear topRoom dataText cause it already exists
-		topRoom.readData(builder);
-		builder.getDataText();// clear topRoom's end }
 	}
 
 	private String checkVersion(String version) throws FileFormatException {
@@ -863,16 +1440,105 @@ public class PSFFileIO implements Closeable {
 		return version;
 	}
 
-	private void writeData() throws IOException {
-		// Write Version
-		builder.buildDataText(IDENTIFIER); // to filter out, if the file is from the right format
-		builder.buildDataText("Version: " + VERSION);
-		builder.buildDataText("Updated: " + UPDATED);
-		builder.buildDataText("Creator: " + CREATOR);
-		builder.buildDataText("File Creator: " + fileCreator);
-		builder.buildDataText("[" + topRoom.getName() + "]:{");
-		topRoom.writeData(builder);
-		builder.buildDataText("}");
+	/**
+	 * Writes all data into a temporary file, which replaces the file at the end.
+	 * Rooms which are unchanged since they were read or saved are copied from the
+	 * old file. The index of the rooms is written behind the topRoom
+	 */
+	private void writeData(long epoch) throws IOException {
+		PSFMetrics metrics = PSFFileIO.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		File temp = new File(outFile.getPath() + ".tmp");
+		KeyTable table;
+		try (FileChannel source = sourceFile == null ? null
+				: FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ);
+				DataWriter writer = new DataWriter(FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+			builder = new DataBuilder(this, writer);
+			builder.setCompressed(compressed);
+			builder.setIndexed(true);
+			builder.setParallel(parallel && ForkJoinPool.getCommonPoolParallelism() > 1);
+			// the copied rooms keep the ids of the old dictionary
+			table = source != null && keys != null ? new KeyTable(keys) : new KeyTable();
+			topRoom.collectKeys(table, source == null);
+			table.addCounted();
+			builder.setKeys(table);
+			builder.buildHeader(fileCreator);
+			builder.buildRoomStart(topRoom.getName());
+			topRoom.writeData(builder, epoch, source);
+			builder.buildRoomEnd();
+			builder.buildIndex();
+			writer.force();
+			if (metrics != null) {
+				metrics.documentSerialized(System.nanoTime() - start);
+				metrics.bytesWritten(writer.position());
+			}
+		}
+		try {
+			Files.move(temp.toPath(), outFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), outFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		keys = table;
+	}
+
+	/**
+	 * Writes all data into the file, the PSFFileIO stays open.<br>
+	 * Only the rooms, which were changed since the last save, are encoded again,
+	 * all others are copied byte by byte from the old file. If nothing was
+	 * changed, nothing is written.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void save() throws IOException {
+		if (outFile == null)
+			throw new IllegalStateException("The PSFFileIO has no file to write");
+		if (topRoom.getLastChange() <= savedEpoch)
+			return;
+		PSFMetrics metrics = PSFFileIO.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		long epoch = topRoom.newEpoch();
+		try {
+			writeData(epoch);
+		} catch (IOException | RuntimeException e) {
+			sourceFile = null; // the positions of the rooms are not reliable anymore
+			throw e;
+		}
+		// the file contains all data, an old journal must not be applied to it
+		PSFJournal.deleteJournals(outFile);
+		sourceFile = outFile;
+		savedEpoch = epoch;
+		if (metrics != null)
+			metrics.saved(System.nanoTime() - start);
+	}
+
+	/**
+	 * Saves like {@link #save()}, without blocking the calling thread. Changes,
+	 * which are made while the file is written, are part of the next save
+	 * 
+	 * @return the future of the save, which fails with the exception of the save
+	 */
+	public CompletableFuture<Void> saveAsync() {
+		return saveAsync(asyncExecutor());
+	}
+
+	/**
+	 * Saves like {@link #save()}, without blocking the calling thread
+	 * 
+	 * @param executor runs the writing of the file
+	 * @return the future of the save, which fails with the exception of the save
+	 */
+	public CompletableFuture<Void> saveAsync(Executor executor) {
+		if (outFile == null)
+			throw new IllegalStateException("The PSFFileIO has no file to write");
+		return CompletableFuture.runAsync(() -> {
+			try {
+				save();
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
 	}
 
 	/**
@@ -892,6 +1558,33 @@ public class PSFFileIO implements Closeable {
 		topRoom.printDataObjects();
 	}
 
+	/**
+	 * Publishes an immutable snapshot of all rooms and data. All changes which
+	 * were finished before are part of the snapshot, later changes only become
+	 * visible with the next publish. Rooms without changes since the last
+	 * publish are shared with the last snapshot.
+	 *
+	 * @return the new snapshot
+	 */
+	public synchronized PSFSnapshot publish() {
+		PSFSnapshot published = PSFSnapshot.of(topRoom, snapshot, topRoom.newEpoch());
+		snapshot = published;
+		return published;
+	}
+
+	/**
+	 * The snapshot never blocks and never changes, so several values read from it
+	 * always belong together. If nothing was published yet, the current data is
+	 * published.
+	 *
+	 * @return the last published snapshot of all rooms and data
+	 * @see #publish()
+	 */
+	public PSFSnapshot snapshot() {
+		PSFSnapshot last = snapshot;
+		return last != null ? last : publish();
+	}
+
 	/**
 	 * get the PSFFileIO version of the file
 	 */
@@ -918,6 +1611,7 @@ public class PSFFileIO implements Closeable {
 	 */
 	public PSFFileIO setFileCreator(String creator) {
 		this.fileCreator = creator;
+		savedEpoch = -1;
 		return this;
 	}
 
@@ -932,18 +1626,25 @@ public class PSFFileIO implements Closeable {
 	 * List all object names on slot 0 and "room" or "data" on slot 2
 	 */
 	public String[][] listCurrentRoom() {
-		ArrayList<DataObject> data = currentRoom.getDataObjects();
-		ArrayList<ObjectRoom> childs = currentRoom.getChilds();
-		String[][] list = new String[childs.size() + data.size()][2];
-		for (int i = 0; i < data.size(); i++) {
-			list[i][0] = data.get(i).getKey();
-			list[i][1] = "data";
-		}
-		for (int i = 0; i < childs.size(); i++) {
-			list[i + data.size()][0] = childs.get(i).getName();
-			list[i + data.size()][1] = "room";
+		ObjectRoom room = currentRoom();
+		ArrayList<DataObject> data = room.getDataObjects();
+		ArrayList<ObjectRoom> childs = room.getChilds();
+		Lock read = room.getLock().readLock();
+		read.lock();
+		try {
+			String[][] list = new String[childs.size() + data.size()][2];
+			for (int i = 0; i < data.size(); i++) {
+				list[i][0] = data.get(i).getKey();
+				list[i][1] = "data";
+			}
+			for (int i = 0; i < childs.size(); i++) {
+				list[i + data.size()][0] = childs.get(i).getName();
+				list[i + data.size()][1] = "room";
+			}
+			return list;
+		} finally {
+			read.unlock();
 		}
-		return list;
 	}
 
 	/**
@@ -953,39 +1654,21 @@ public class PSFFileIO implements Closeable {
 	 * @return DataObject from key or null if there is no DataObject with this key
 	 */
 	public DataObject getDataObject(String key) {
-		for (DataObject dO : currentRoom.getDataObjects())
-			if (dO.getKey().equals(key))
-				return dO;
-		return null;
+		return currentRoom().findDataObject(key);
 	}
 
 	public void addDataObject(DataObject object) {
-		ArrayList<DataObject> dOs = currentRoom.getDataObjects();
-		DataObject existing = null;
-		for (DataObject dO : dOs) {
-			if (dO.getKey().equals(object.getKey())) {
-				existing = dO;
-				break;
-			}
-		}
-		if (existing != null) {
-			int pos = dOs.indexOf(existing);
-			dOs.set(pos, object);
-		} else
-			currentRoom.getDataObjects().add(object);
+		currentRoom().addDataObject(object);
 	}
 
 	@Override
 	public void close() throws IOException {
-		if (writer != null) {
-			builder = new DataBuilder(this, writer);
-			writeData();
-			writer.close();
-		}
+		if (outFile != null)
+			save();
 		if (reader != null)
 			reader.close();
-		if (stream != null)
-			stream.close();
+		if (journal != null)
+			journal.close();
 	}
 
 	public static File chooseFile(String dictonary, Component parent, boolean open) {
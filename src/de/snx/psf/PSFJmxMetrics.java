@@ -0,0 +1,246 @@
+package de.snx.psf;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Sums up the measurements of the {@link PSFMetrics} and shows them as an
+ * MBean, e.g. in the JConsole:
+ *
+ * <pre>
+ * PSFFileIO.metrics = new PSFJmxMetrics().register();
+ * </pre>
+ *
+ * The counters can be updated by many threads at once without blocking each
+ * other.
+ *
+ * @author Sunnix
+ *
+ */
+public class PSFJmxMetrics implements PSFMetrics, PSFJmxMetricsMBean {
+
+	public static final String OBJECT_NAME = "de.snx.psf:type=PSFMetrics";
+
+	private final LongAdder bytesRead = new LongAdder(), bytesWritten = new LongAdder();
+	private final LongAdder documentsParsed = new LongAdder(), parseNanos = new LongAdder();
+	private final LongAdder roomsParsed = new LongAdder(), roomParseNanos = new LongAdder();
+	private final LongAdder documentsSerialized = new LongAdder(), serializeNanos = new LongAdder();
+	private final LongAdder roomsSerialized = new LongAdder(), roomSerializeNanos = new LongAdder();
+	private final LongAdder lookupHits = new LongAdder(), lookupMisses = new LongAdder();
+	private final LongAdder linearScans = new LongAdder(), linearScanLength = new LongAdder();
+	private final LongAdder softErrors = new LongAdder();
+	private final LongAdder saves = new LongAdder(), saveNanos = new LongAdder();
+	private final LongAccumulator maxRoomParseNanos = new LongAccumulator(Math::max, 0);
+	private final LongAccumulator maxRoomSerializeNanos = new LongAccumulator(Math::max, 0);
+	private final LongAccumulator maxLinearScanLength = new LongAccumulator(Math::max, 0);
+	private final LongAccumulator maxSaveNanos = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Registers the metrics at the platform MBean server with the name
+	 * {@value #OBJECT_NAME}, a registered metrics with this name is replaced
+	 *
+	 * @return this
+	 * @throws IllegalStateException if the MBean could not be registered
+	 */
+	public PSFJmxMetrics register() {
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+		} catch (JMException e) {
+			throw new IllegalStateException("Could not register the metrics", e);
+		}
+		return this;
+	}
+
+	@Override
+	public void bytesRead(long bytes) {
+		bytesRead.add(bytes);
+	}
+
+	@Override
+	public void bytesWritten(long bytes) {
+		bytesWritten.add(bytes);
+	}
+
+	@Override
+	public void documentParsed(long nanos) {
+		documentsParsed.increment();
+		parseNanos.add(nanos);
+	}
+
+	@Override
+	public void roomParsed(String name, long nanos) {
+		roomsParsed.increment();
+		roomParseNanos.add(nanos);
+		maxRoomParseNanos.accumulate(nanos);
+	}
+
+	@Override
+	public void documentSerialized(long nanos) {
+		documentsSerialized.increment();
+		serializeNanos.add(nanos);
+	}
+
+	@Override
+	public void roomSerialized(String name, long nanos) {
+		roomsSerialized.increment();
+		roomSerializeNanos.add(nanos);
+		maxRoomSerializeNanos.accumulate(nanos);
+	}
+
+	@Override
+	public void lookup(boolean hit) {
+		(hit ? lookupHits : lookupMisses).increment();
+	}
+
+	@Override
+	public void linearScan(int length) {
+		linearScans.increment();
+		linearScanLength.add(length);
+		maxLinearScanLength.accumulate(length);
+	}
+
+	@Override
+	public void softError() {
+		softErrors.increment();
+	}
+
+	@Override
+	public void saved(long nanos) {
+		saves.increment();
+		saveNanos.add(nanos);
+		maxSaveNanos.accumulate(nanos);
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1_000_000d;
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead.sum();
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return bytesWritten.sum();
+	}
+
+	@Override
+	public long getDocumentsParsed() {
+		return documentsParsed.sum();
+	}
+
+	@Override
+	public double getParseTime() {
+		return millis(parseNanos.sum());
+	}
+
+	@Override
+	public long getRoomsParsed() {
+		return roomsParsed.sum();
+	}
+
+	@Override
+	public double getRoomParseTime() {
+		return millis(roomParseNanos.sum());
+	}
+
+	@Override
+	public double getMaxRoomParseTime() {
+		return millis(maxRoomParseNanos.get());
+	}
+
+	@Override
+	public long getDocumentsSerialized() {
+		return documentsSerialized.sum();
+	}
+
+	@Override
+	public double getSerializeTime() {
+		return millis(serializeNanos.sum());
+	}
+
+	@Override
+	public long getRoomsSerialized() {
+		return roomsSerialized.sum();
+	}
+
+	@Override
+	public double getRoomSerializeTime() {
+		return millis(roomSerializeNanos.sum());
+	}
+
+	@Override
+	public double getMaxRoomSerializeTime() {
+		return millis(maxRoomSerializeNanos.get());
+	}
+
+	@Override
+	public long getLookupHits() {
+		return lookupHits.sum();
+	}
+
+	@Override
+	public long getLookupMisses() {
+		return lookupMisses.sum();
+	}
+
+	@Override
+	public long getLinearScans() {
+		return linearScans.sum();
+	}
+
+	@Override
+	public long getLinearScanLength() {
+		return linearScanLength.sum();
+	}
+
+	@Override
+	public long getMaxLinearScanLength() {
+		return maxLinearScanLength.get();
+	}
+
+	@Override
+	public long getSoftErrors() {
+		return softErrors.sum();
+	}
+
+	@Override
+	public long getSaves() {
+		return saves.sum();
+	}
+
+	@Override
+	public double getSaveTime() {
+		return millis(saveNanos.sum());
+	}
+
+	@Override
+	public double getMaxSaveTime() {
+		return millis(maxSaveNanos.get());
+	}
+
+	@Override
+	public void reset() {
+		for (LongAdder adder : new LongAdder[] { bytesRead, bytesWritten, documentsParsed, parseNanos, roomsParsed,
+				roomParseNanos, documentsSerialized, serializeNanos, roomsSerialized, roomSerializeNanos, lookupHits,
+				lookupMisses, linearScans, linearScanLength, softErrors, saves, saveNanos })
+			adder.reset();
+		for (LongAccumulator max : new LongAccumulator[] { maxRoomParseNanos, maxRoomSerializeNanos,
+				maxLinearScanLength, maxSaveNanos })
+			max.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "PSFJmxMetrics[read: " + getBytesRead() + " bytes, written: " + getBytesWritten() + " bytes, hits: "
+				+ getLookupHits() + ", misses: " + getLookupMisses() + "]";
+	}
+}
@@ -0,0 +1,58 @@
+package de.snx.psf;
+
+/**
+ * The attributes of the {@link PSFJmxMetrics} over JMX, the times are in
+ * milliseconds
+ *
+ * @author Sunnix
+ *
+ */
+public interface PSFJmxMetricsMBean {
+
+	long getBytesRead();
+
+	long getBytesWritten();
+
+	long getDocumentsParsed();
+
+	double getParseTime();
+
+	long getRoomsParsed();
+
+	double getRoomParseTime();
+
+	double getMaxRoomParseTime();
+
+	long getDocumentsSerialized();
+
+	double getSerializeTime();
+
+	long getRoomsSerialized();
+
+	double getRoomSerializeTime();
+
+	double getMaxRoomSerializeTime();
+
+	long getLookupHits();
+
+	long getLookupMisses();
+
+	long getLinearScans();
+
+	long getLinearScanLength();
+
+	long getMaxLinearScanLength();
+
+	long getSoftErrors();
+
+	long getSaves();
+
+	double getSaveTime();
+
+	double getMaxSaveTime();
+
+	/**
+	 * Sets all values back to 0
+	 */
+	void reset();
+}
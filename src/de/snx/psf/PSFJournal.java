@@ -0,0 +1,353 @@
+package de.snx.psf;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+import de.snx.psf.util.ChangeLog;
+import de.snx.psf.util.DataBuilder;
+import de.snx.psf.util.DataObject;
+import de.snx.psf.util.DataReader;
+import de.snx.psf.util.DataWriter;
+import de.snx.psf.util.FileFormatException;
+import de.snx.psf.util.ObjectRoom;
+
+/**
+ * The journal of a {@link PSFFileIO} in the mode "j".<br>
+ * Every change is appended to the file "<i>file</i>.journal" as a small
+ * record, instead of rewriting the whole file. When the file is opened, the
+ * records are applied again.<br>
+ * When the journal grows over its limit, a new journal is started and the old
+ * one is compacted in the background: a snapshot of the data is written into a
+ * temporary file, which replaces the file, then the old journal is deleted. The
+ * records only set values, create or remove rooms, so applying a journal again
+ * on a file which already contains its changes does no harm. If the compaction
+ * is interrupted, it is finished the next time the file is opened. If it
+ * fails, the old journal is kept and the compaction is tried again, when the
+ * new journal reaches the limit, so the journal can't grow without limit.<br>
+ * When the journal is closed, it is compacted and deleted, so the file
+ * contains all data again and can be read in the other modes.
+ *
+ * @author Sunnix
+ *
+ */
+class PSFJournal implements ChangeLog, Closeable {
+
+	private static final String IDENTIFIER = "PSFJournal V1";
+	static final long DEFAULT_LIMIT = 64L << 20;
+	/**
+	 * the length of the identifier at the start of a journal
+	 */
+	private static final int HEADER = DataWriter.varIntSize(IDENTIFIER.length()) + IDENTIFIER.length();
+
+	private static final int RECORD_DATA = 1;
+	private static final int RECORD_ROOM = 2;
+	private static final int RECORD_REMOVE = 3;
+
+	private final PSFFileIO fileIO;
+	private final ObjectRoom topRoom;
+	private final File file, journalFile, oldJournalFile, tempFile;
+
+	private DataWriter out;
+	private DataBuilder builder;
+
+	private volatile long limit = DEFAULT_LIMIT;
+	private Thread compaction;
+	/**
+	 * the snapshot of the last compaction, to reuse its unchanged rooms
+	 */
+	private PSFSnapshot lastCompacted;
+	/**
+	 * the last compaction failed, the old journal is kept until the next
+	 * compaction
+	 */
+	private boolean failed;
+
+	/**
+	 * Applies the journals of the file to the topRoom and receives its changes
+	 * from now on
+	 */
+	PSFJournal(PSFFileIO fileIO, ObjectRoom topRoom, File file) throws IOException, FileFormatException {
+		this.fileIO = fileIO;
+		this.topRoom = topRoom;
+		this.file = file;
+		journalFile = journalFile(file);
+		oldJournalFile = oldJournalFile(file);
+		tempFile = new File(file.getPath() + ".tmp");
+		boolean interrupted = oldJournalFile.exists();
+		if (interrupted)
+			replay(oldJournalFile);
+		long end = journalFile.exists() ? replay(journalFile) : 0;
+		if (interrupted) {
+			// finish the interrupted compaction, the current journal is part of it
+			compact();
+			if (!failed)
+				end = 0;
+		}
+		openJournal(end);
+		topRoom.setChangeLog(this);
+	}
+
+	private static File journalFile(File file) {
+		return new File(file.getPath() + ".journal");
+	}
+
+	private static File oldJournalFile(File file) {
+		return new File(file.getPath() + ".journal.old");
+	}
+
+	/**
+	 * @throws IOException if the file has a journal, which was not compacted,
+	 *                     because the file was not closed in the mode "j"
+	 */
+	static void checkNoJournal(File file) throws IOException {
+		if (journalFile(file).exists() || oldJournalFile(file).exists())
+			throw new IOException("The file " + file
+					+ " has a journal with changes, which are not in the file. Open it with the mode \"j\" to apply them");
+	}
+
+	/**
+	 * Deletes the journals of the file, after all data was written into the file
+	 * without them
+	 */
+	static void deleteJournals(File file) throws IOException {
+		Files.deleteIfExists(journalFile(file).toPath());
+		Files.deleteIfExists(oldJournalFile(file).toPath());
+	}
+
+	void setLimit(long limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * Applies the records of the journal
+	 *
+	 * @return the position after the last complete record
+	 */
+	private long replay(File journal) throws IOException, FileFormatException {
+		try (FileChannel channel = FileChannel.open(journal.toPath(), StandardOpenOption.READ)) {
+			DataReader in = new DataReader(channel);
+			DataBuilder builder = new DataBuilder(fileIO, in);
+			long end = 0;
+			try {
+				if (!in.readString().equals(IDENTIFIER))
+					throw new FileFormatException("The file " + journal + " is no journal");
+				end = in.position();
+				while (in.hasRemaining()) {
+					replayRecord(in, builder);
+					end = in.position();
+				}
+			} catch (EOFException e) {
+				// the last record was not written completely
+			}
+			return end;
+		}
+	}
+
+	private void replayRecord(DataReader in, DataBuilder builder) throws IOException, FileFormatException {
+		int record = in.readUnsignedByte();
+		ObjectRoom room = topRoom;
+		for (int depth = in.readVarInt(); depth > 0; depth--)
+			room = room.getOrCreateChild(builder.getString());
+		switch (record) {
+		case RECORD_DATA:
+			room.addDataObject(builder.getDataObject(builder.getTag()));
+			break;
+		case RECORD_ROOM:
+			break; // already created by the path
+		case RECORD_REMOVE:
+			room.removeChild(builder.getString());
+			break;
+		default:
+			throw new FileFormatException("Unknown record " + record + " in the journal");
+		}
+	}
+
+	/**
+	 * Opens the journal for appending, all content after the position is
+	 * discarded
+	 */
+	private void openJournal(long position) throws IOException {
+		FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE);
+		channel.truncate(position);
+		channel.position(position);
+		out = new DataWriter(channel);
+		builder = new DataBuilder(fileIO, out);
+		if (position == 0) {
+			out.writeString(IDENTIFIER);
+			out.flush();
+		}
+	}
+
+	@Override
+	public synchronized void dataWritten(ObjectRoom room, DataObject dataObject) {
+		try {
+			out.writeByte(RECORD_DATA);
+			writePath(room);
+			builder.buildDataSet(dataObject);
+			endRecord();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not write the journal", e);
+		}
+	}
+
+	@Override
+	public synchronized void roomCreated(ObjectRoom room) {
+		try {
+			out.writeByte(RECORD_ROOM);
+			writePath(room);
+			endRecord();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not write the journal", e);
+		}
+	}
+
+	@Override
+	public synchronized void roomRemoved(ObjectRoom room) {
+		try {
+			out.writeByte(RECORD_REMOVE);
+			writePath(room.getParent());
+			out.writeString(room.getName());
+			endRecord();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not write the journal", e);
+		}
+	}
+
+	/**
+	 * writes the names of the rooms from the topRoom to the room
+	 */
+	private void writePath(ObjectRoom room) throws IOException {
+		ArrayDeque<String> path = new ArrayDeque<>();
+		for (; room != topRoom; room = room.getParent())
+			path.push(room.getName());
+		out.writeVarInt(path.size());
+		for (String name : path)
+			out.writeString(name);
+	}
+
+	private void endRecord() throws IOException {
+		out.flush();
+		if (out.position() > limit && compaction == null)
+			startCompaction();
+	}
+
+	/**
+	 * Starts a new journal and compacts the old one in the background. The old
+	 * journal of a failed compaction is kept, the records of the journal are
+	 * appended to it.
+	 */
+	private void startCompaction() throws IOException {
+		out.close();
+		if (oldJournalFile.exists())
+			appendToOldJournal();
+		else
+			Files.move(journalFile.toPath(), oldJournalFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		failed = false;
+		openJournal(0);
+		compaction = new Thread(() -> {
+			compact();
+			synchronized (this) {
+				compaction = null;
+			}
+		}, "PSFJournal compaction");
+		compaction.setDaemon(true);
+		compaction.start();
+	}
+
+	private void appendToOldJournal() throws IOException {
+		try (FileChannel source = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ);
+				FileChannel target = FileChannel.open(oldJournalFile.toPath(), StandardOpenOption.WRITE,
+						StandardOpenOption.APPEND)) {
+			for (long position = HEADER; position < source.size();)
+				position += source.transferTo(position, source.size() - position, target);
+			target.force(false);
+		}
+	}
+
+	/**
+	 * Writes all data into the file and deletes the old journal, which is part of
+	 * the data now. If it fails, the old journal is kept
+	 */
+	private void compact() {
+		try {
+			writeSnapshot();
+		} catch (IOException | RuntimeException e) {
+			synchronized (this) {
+				failed = true;
+			}
+			PSFMetrics metrics = PSFFileIO.metrics;
+			if (metrics != null)
+				metrics.softError();
+			new IOException("Could not compact the journal of " + file, e).printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the data into the file and deletes the old journal
+	 */
+	private void writeSnapshot() throws IOException {
+		PSFSnapshot snapshot = PSFSnapshot.of(topRoom, lastCompacted, topRoom.newEpoch());
+		try (DataWriter writer = new DataWriter(FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+			DataBuilder builder = new DataBuilder(fileIO, writer);
+			builder.setCompressed(fileIO.isCompressed());
+			builder.setIndexed(true);
+			builder.buildHeader(fileIO.getFileCreator());
+			builder.buildRoomStart(topRoom.getName());
+			snapshot.writeData(builder, "");
+			builder.buildRoomEnd();
+			builder.buildIndex();
+			writer.force();
+		}
+		try {
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		Files.deleteIfExists(oldJournalFile.toPath());
+		lastCompacted = snapshot;
+	}
+
+	/**
+	 * Waits for a running compaction, writes the changes of the journal into the
+	 * file and deletes the journal. If the file can't be written, the journal is
+	 * kept and applied the next time the file is opened in the mode "j"
+	 */
+	@Override
+	public void close() throws IOException {
+		Thread running;
+		synchronized (this) {
+			running = compaction;
+		}
+		if (running != null)
+			try {
+				running.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		synchronized (this) {
+			topRoom.setChangeLog(null);
+			out.force();
+			out.close();
+			if (journalFile.length() > HEADER || oldJournalFile.exists() || file.length() == 0) {
+				if (oldJournalFile.exists())
+					appendToOldJournal();
+				else
+					Files.move(journalFile.toPath(), oldJournalFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				writeSnapshot();
+			}
+			Files.deleteIfExists(journalFile.toPath());
+		}
+	}
+}
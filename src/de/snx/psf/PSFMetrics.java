@@ -0,0 +1,83 @@
+package de.snx.psf;
+
+/**
+ * Receives measurements of the reading, writing and lookups of all
+ * {@link PSFFileIO}s, when it is set in {@link PSFFileIO#metrics}.<br>
+ * The methods are called by the thread, which did the work, so they can be
+ * called by several threads at once and have to return fast. Without metrics
+ * nothing is measured.<br>
+ * {@link PSFJmxMetrics} collects the measurements and shows them over JMX.
+ *
+ * @author Sunnix
+ *
+ */
+public interface PSFMetrics {
+
+	/**
+	 * Bytes were read from a file, for a lazy file when a room is read
+	 */
+	default void bytesRead(long bytes) {
+	}
+
+	/**
+	 * Bytes were written into a file, with the copied rooms
+	 */
+	default void bytesWritten(long bytes) {
+	}
+
+	/**
+	 * A file was read, for a lazy file only the header and the index
+	 */
+	default void documentParsed(long nanos) {
+	}
+
+	/**
+	 * A room in the topRoom was read with all of its child rooms
+	 */
+	default void roomParsed(String name, long nanos) {
+	}
+
+	/**
+	 * All data was encoded into a file
+	 */
+	default void documentSerialized(long nanos) {
+	}
+
+	/**
+	 * A room in the topRoom was encoded with all of its child rooms. Rooms which
+	 * are copied unchanged are not reported
+	 */
+	default void roomSerialized(String name, long nanos) {
+	}
+
+	/**
+	 * A DataObject was looked up by its key
+	 *
+	 * @param hit <b>false</b> if there is no DataObject with the key
+	 */
+	default void lookup(boolean hit) {
+	}
+
+	/**
+	 * The list of a room was searched from the start to the end, like when the
+	 * index of the keys is built again after a removal
+	 *
+	 * @param length the count of elements, which were searched
+	 */
+	default void linearScan(int length) {
+	}
+
+	/**
+	 * The stack trace of a soft error was printed
+	 *
+	 * @see PSFFileIO#showSoftErrors
+	 */
+	default void softError() {
+	}
+
+	/**
+	 * A save was finished, with the waiting for the storage
+	 */
+	default void saved(long nanos) {
+	}
+}
@@ -0,0 +1,131 @@
+package de.snx.psf;
+
+import java.lang.ref.WeakReference;
+
+import de.snx.psf.util.DataObject;
+import de.snx.psf.util.ObjectRoom;
+
+/**
+ * A compiled path to a DataObject, like "profiles/p42/stats/hp".<br>
+ * All parts except the last one are rooms, starting at the topRoom, the last
+ * part is the key of the DataObject. The current room of the
+ * {@link PSFFileIO} is not used or changed.<br>
+ * <br>
+ * The room of the path is found once and kept for the last used PSFFileIO, so
+ * following reads and writes only need to look up the key. A path can be
+ * compiled once and used in many places, like a constant.
+ *
+ * @author Sunnix
+ *
+ */
+public class PSFPath {
+
+	private final String path;
+	private final String[] rooms;
+	private final String key;
+
+	/**
+	 * the last resolved room
+	 */
+	private volatile Resolved resolved;
+
+	private static class Resolved {
+		final WeakReference<ObjectRoom> topRoom;
+		final WeakReference<ObjectRoom> room;
+		final int structureVersion;
+
+		Resolved(ObjectRoom topRoom, ObjectRoom room) {
+			this.topRoom = new WeakReference<>(topRoom);
+			this.room = new WeakReference<>(room);
+			structureVersion = topRoom.getStructureVersion();
+		}
+	}
+
+	private PSFPath(String path) {
+		this.path = path;
+		String[] parts = path.split("/", -1);
+		for (String part : parts)
+			if (part.isEmpty())
+				throw new IllegalArgumentException("The path \"" + path + "\" contains an empty part");
+		rooms = new String[parts.length - 1];
+		System.arraycopy(parts, 0, rooms, 0, rooms.length);
+		key = parts[parts.length - 1];
+		if (key.contains("*"))
+			throw new IllegalArgumentException("The key " + key + " is invalid!");
+	}
+
+	/**
+	 * @param path the rooms and the key separated by '/', like
+	 *             "profiles/p42/stats/hp"
+	 * @return the compiled path
+	 */
+	public static PSFPath compile(String path) {
+		return new PSFPath(path);
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return the names of the rooms, starting at the topRoom
+	 */
+	public String[] getRooms() {
+		return rooms.clone();
+	}
+
+	String[] rooms() {
+		return rooms;
+	}
+
+	/**
+	 * Finds the room of the path
+	 *
+	 * @param topRoom the topRoom of the PSFFileIO
+	 * @param create  <b>true</b> to create missing rooms
+	 * @return the room or null if it does not exist and create is <b>false</b>
+	 */
+	ObjectRoom resolve(ObjectRoom topRoom, boolean create) {
+		Resolved last = resolved;
+		if (last != null && last.topRoom.get() == topRoom
+				&& last.structureVersion == topRoom.getStructureVersion()) {
+			ObjectRoom room = last.room.get();
+			if (room != null)
+				return room;
+		}
+		ObjectRoom room = topRoom;
+		for (String name : rooms) {
+			ObjectRoom child = create ? room.getOrCreateChild(name) : room.getChild(name);
+			if (child == null)
+				return null;
+			room = child;
+		}
+		resolved = new Resolved(topRoom, room);
+		return room;
+	}
+
+	/**
+	 * @param topRoom the topRoom of the PSFFileIO
+	 * @return the DataObject of the path or null if it does not exist
+	 */
+	DataObject getDataObject(ObjectRoom topRoom) {
+		ObjectRoom room = resolve(topRoom, false);
+		if (room == null) {
+			PSFMetrics metrics = PSFFileIO.metrics;
+			if (metrics != null)
+				metrics.lookup(false);
+			if (PSFFileIO.showSoftErrors) {
+				if (metrics != null)
+					metrics.softError();
+				new NullPointerException("There is no room for the path \"" + path + "\"").printStackTrace();
+			}
+			return null;
+		}
+		return room.getDataObject(key);
+	}
+
+	@Override
+	public String toString() {
+		return path;
+	}
+}
@@ -0,0 +1,138 @@
+package de.snx.psf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.concurrent.locks.Lock;
+
+import de.snx.psf.util.DataBuilder;
+import de.snx.psf.util.DataObject;
+import de.snx.psf.util.ObjectRoom;
+
+/**
+ * An immutable copy of a room and all of its child rooms, taken by
+ * {@link PSFFileIO#publish()}.<br>
+ * A snapshot never changes, so it can be read by any count of threads without
+ * locks. The DataObjects of a snapshot are immutable copies.<br>
+ * <br>
+ * A new snapshot shares all rooms, which were not changed since the last
+ * snapshot, with the last snapshot. So publishing after a few changes only
+ * copies the changed rooms and the rooms above them.
+ *
+ * @author Sunnix
+ *
+ */
+public final class PSFSnapshot {
+
+	private final String name;
+	/**
+	 * the room the snapshot was taken from and the epoch of its content
+	 */
+	private final ObjectRoom source;
+	private final long epoch;
+
+	private final LinkedHashMap<String, DataObject> dataObjects;
+	private final LinkedHashMap<String, PSFSnapshot> rooms;
+
+	private PSFSnapshot(ObjectRoom room, PSFSnapshot last, long epoch) {
+		name = room.getName();
+		source = room;
+		this.epoch = epoch;
+		ArrayList<DataObject> data = room.getDataObjects();
+		ArrayList<ObjectRoom> childs = room.getChilds();
+		ObjectRoom[] childRooms;
+		Lock read = room.getLock().readLock();
+		read.lock();
+		try {
+			dataObjects = new LinkedHashMap<>(data.size() * 4 / 3 + 1);
+			for (DataObject dO : data)
+				dataObjects.putIfAbsent(dO.getKey(), dO.toImmutable());
+			childRooms = childs.toArray(new ObjectRoom[childs.size()]);
+		} finally {
+			read.unlock();
+		}
+		rooms = new LinkedHashMap<>(childRooms.length * 4 / 3 + 1);
+		for (ObjectRoom child : childRooms)
+			if (!rooms.containsKey(child.getName()))
+				rooms.put(child.getName(), of(child, last == null ? null : last.rooms.get(child.getName()), epoch));
+	}
+
+	/**
+	 * @param room  the room to copy
+	 * @param last  the snapshot of the room from the last publish or null
+	 * @param epoch the epoch returned by {@link ObjectRoom#newEpoch()}
+	 * @return the last snapshot, if the room is unchanged, otherwise a new one
+	 */
+	static PSFSnapshot of(ObjectRoom room, PSFSnapshot last, long epoch) {
+		if (last != null && last.source == room && room.getLastChange() <= last.epoch)
+			return last;
+		return new PSFSnapshot(room, last, epoch);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the child room with this name or null if there is none
+	 */
+	public PSFSnapshot getRoom(String name) {
+		return rooms.get(name);
+	}
+
+	public Collection<PSFSnapshot> getRooms() {
+		return Collections.unmodifiableCollection(rooms.values());
+	}
+
+	/**
+	 * @return the DataObject with this key or null if there is none
+	 */
+	public DataObject getDataObject(String key) {
+		return dataObjects.get(key);
+	}
+
+	/**
+	 * @param path path starting at this room
+	 * @return the DataObject of the path or null if there is none
+	 */
+	public DataObject getDataObject(PSFPath path) {
+		PSFSnapshot room = this;
+		for (String name : path.rooms()) {
+			room = room.rooms.get(name);
+			if (room == null)
+				return null;
+		}
+		return room.dataObjects.get(path.getKey());
+	}
+
+	public Collection<DataObject> getDataObjects() {
+		return Collections.unmodifiableCollection(dataObjects.values());
+	}
+
+	/**
+	 * writes the entries of the room in the binary format, the room itself has
+	 * to be opened by the caller
+	 *
+	 * @param path the path of the room like "profiles/p42/", empty for the
+	 *             topRoom
+	 */
+	void writeData(DataBuilder builder, String path) throws IOException {
+		for (DataObject dO : dataObjects.values())
+			builder.buildDataSet(dO);
+		for (PSFSnapshot room : rooms.values()) {
+			String roomPath = path + room.name + "/";
+			if (builder.getIndexLevels() > 0)
+				builder.indexRoom(roomPath, builder.position());
+			builder.buildRoomStart(room.name);
+			room.writeData(builder, roomPath);
+			builder.buildRoomEnd();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "PSFSnapshot[name: " + name + "]";
+	}
+}
@@ -0,0 +1,38 @@
+package de.snx.psf;
+
+import de.snx.psf.util.DataObject;
+
+/**
+ * Receives the content of a file, which is read by a {@link PSFStreamReader},
+ * in the order of the file
+ *
+ * @author Sunnix
+ *
+ */
+public interface PSFStreamListener {
+
+	/**
+	 * A room was entered, the content of the room follows until
+	 * {@link #onRoomEnd(String)} is called for this room
+	 *
+	 * @param name name of the room
+	 * @return <b>false</b> to skip the room with all its content
+	 */
+	default boolean onRoomStart(String name) {
+		return true;
+	}
+
+	/**
+	 * A data object of the current room was read
+	 */
+	default void onData(DataObject data) {
+	}
+
+	/**
+	 * The room was left, the following content belongs to its parent room
+	 *
+	 * @param name name of the room
+	 */
+	default void onRoomEnd(String name) {
+	}
+}
@@ -0,0 +1,133 @@
+package de.snx.psf;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+import de.snx.psf.util.DataBuilder;
+import de.snx.psf.util.DataObject;
+import de.snx.psf.util.DataReader;
+import de.snx.psf.util.FileFormatException;
+
+/**
+ * Reads a file from the beginning to the end and reports its rooms and data
+ * objects to a {@link PSFStreamListener}, without keeping them in the
+ * memory.<br>
+ * This can be used for files, which are too large to be read by a
+ * {@link PSFFileIO}.<br>
+ * <br>
+ * Rooms skipped by the listener are jumped over in files of the version 4,
+ * files of the version 3 have to be read through. Compressed rooms are only
+ * decompressed, if the listener enters them.
+ *
+ * @author Sunnix
+ *
+ */
+public class PSFStreamReader implements Closeable {
+
+	private DataReader reader;
+	private DataBuilder builder;
+	private String[] header;
+
+	/**
+	 * @param file file to read
+	 * @throws IOException         if the file has a journal of the mode "j",
+	 *                             which is not compacted
+	 * @throws FileFormatException if the file does not correspond to the
+	 *                             PSFFileIO format
+	 */
+	public PSFStreamReader(File file) throws IOException, FileFormatException {
+		if (file == null)
+			throw new NullPointerException("File is null");
+		PSFJournal.checkNoJournal(file);
+		reader = new DataReader(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+		builder = new DataBuilder(null, reader);
+		try {
+			header = builder.getHeader(Charset.defaultCharset());
+		} catch (IOException | FileFormatException e) {
+			reader.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the whole file and reports the content to the listener. Can only be
+	 * called once.
+	 */
+	public void read(PSFStreamListener listener) throws IOException {
+		if (builder.isBinary()) {
+			if (builder.getTag() != DataBuilder.TAG_ROOM)
+				throw new IOException("The file does not start with the topRoom");
+			builder.getRoomStart();
+			readBinaryRoom(builder, listener);
+		} else {
+			builder.getDataText();// topRoom
+			readTextRoom(listener, false);
+			builder.getDataText();// topRoom's end }
+		}
+	}
+
+	/**
+	 * @param builder the builder of the file or of the decompressed content of a
+	 *                compressed room
+	 */
+	private void readBinaryRoom(DataBuilder builder, PSFStreamListener listener) throws IOException {
+		int tag;
+		while ((tag = builder.getTag()) != DataBuilder.TAG_END) {
+			if (tag == DataBuilder.TAG_ROOM || tag == DataBuilder.TAG_COMPRESSED_ROOM) {
+				String name = builder.getKey();
+				long length = builder.getRoomLength();
+				if (listener.onRoomStart(name)) {
+					readBinaryRoom(tag == DataBuilder.TAG_ROOM ? builder : builder.inflate(length), listener);
+					listener.onRoomEnd(name);
+				} else
+					builder.skip(length);
+			} else
+				listener.onData(builder.getDataObject(tag));
+		}
+	}
+
+	/**
+	 * @param skip <b>true</b> to read the room without reporting it
+	 */
+	private void readTextRoom(PSFStreamListener listener, boolean skip) throws IOException {
+		int dataObjectsSize = Integer.parseInt(builder.getDataText());
+		for (int i = 0; i < dataObjectsSize; i++) {
+			DataObject data = builder.getDataObject();
+			if (!skip)
+				listener.onData(data);
+		}
+		int objectRoomSize = Integer.parseInt(builder.getDataText());
+		for (int i = 0; i < objectRoomSize; i++) {
+			String roomName = builder.getDataText();
+			String name = roomName.substring(1, roomName.length() - 3);
+			boolean enter = !skip && listener.onRoomStart(name);
+			readTextRoom(listener, !enter);
+			builder.getDataText(); // clear the closing } symbol
+			if (enter)
+				listener.onRoomEnd(name);
+		}
+	}
+
+	/**
+	 * get the PSFFileIO version of the file
+	 */
+	public String getFileVersion() {
+		return header[0];
+	}
+
+	/**
+	 * get the creatorname from the file
+	 */
+	public String getFileCreator() {
+		return header[3];
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
@@ -0,0 +1,239 @@
+package de.snx.psf;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import de.snx.psf.util.DataBuilder;
+import de.snx.psf.util.DataObject;
+import de.snx.psf.util.DataWriter;
+
+/**
+ * Writes a file while the data is produced, without keeping it in the
+ * memory.<br>
+ * The data is written in the order of the calls. {@link #beginRoom(String)}
+ * opens a room in the current room and {@link #endRoom()} closes it again,
+ * like {@link PSFFileIO#room(String, java.util.function.Consumer)}.<br>
+ * <br>
+ * Other than the {@link PSFFileIO}, keys are not checked for duplicates, so
+ * every key and room should only be written once per room.<br>
+ * The file can be read by {@link PSFFileIO} and {@link PSFStreamReader}.
+ *
+ * @author Sunnix
+ *
+ */
+public class PSFStreamWriter implements Closeable {
+
+	private DataWriter writer;
+	private DataBuilder builder;
+	/**
+	 * count of open rooms, without the topRoom
+	 */
+	private int depth;
+	private boolean closed;
+
+	/**
+	 * @param file file to write, the file and its path are created if they are
+	 *             missing
+	 * @throws IOException
+	 */
+	public PSFStreamWriter(File file) throws IOException {
+		this(file, "n/a");
+	}
+
+	/**
+	 * @param file        file to write, the file and its path are created if they
+	 *                    are missing
+	 * @param fileCreator the creatorname of the file
+	 * @throws IOException
+	 */
+	public PSFStreamWriter(File file, String fileCreator) throws IOException {
+		if (file == null)
+			throw new NullPointerException("File is null");
+		if (file.isDirectory())
+			throw new IOException("The file is a Directory");
+		File path = file.getAbsoluteFile().getParentFile();
+		if (path != null)
+			path.mkdirs();
+		writer = new DataWriter(FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING));
+		builder = new DataBuilder(null, writer);
+		builder.buildHeader(fileCreator);
+		builder.buildRoomStart("topRoom");
+	}
+
+	/**
+	 * Opens a new room in the current room, the following data is written into
+	 * it until {@link #endRoom()} is called
+	 */
+	public void beginRoom(String name) throws IOException {
+		if (name.equals("topRoom"))
+			throw new IllegalArgumentException("topRoom is no valid room");
+		checkOpen();
+		builder.buildRoomStart(name);
+		depth++;
+	}
+
+	/**
+	 * Closes the current room
+	 */
+	public void endRoom() throws IOException {
+		if (depth == 0)
+			throw new IllegalStateException("there is no open room");
+		checkOpen();
+		builder.buildRoomEnd();
+		depth--;
+	}
+
+	public void write(String key, String s) throws IOException {
+		checkOpen();
+		checkValidKey(key);
+		builder.buildDataSet(key, s == null ? "" : s);
+	}
+
+	public void write(String key, char c) throws IOException {
+		checkOpen();
+		checkValidKey(key);
+		builder.buildDataSet(key, c);
+	}
+
+	public void write(String key, byte b) throws IOException {
+		checkOpen();
+		checkValidKey(key);
+		builder.buildDataSet(key, b);
+	}
+
+	public void write(String key, short s) throws IOException {
+		checkOpen();
+		checkValidKey(key);
+		builder.buildDataSet(key, s);
+	}
+
+	public void write(String key, int i) throws IOException {
+		checkOpen();
+		checkValidKey(key);
+		builder.buildDataSet(key, i);
+	}
+
+	public void write(String key, long l) throws IOException {
+		checkOpen();
+		checkValidKey(key);
+		builder.buildDataSet(key, l);
+	}
+
+	public void write(String key, float f) throws IOException {
+		checkOpen();
+		checkValidKey(key);
+		builder.buildDataSet(key, f);
+	}
+
+	public void write(String key, double d) throws IOException {
+		checkOpen();
+		checkValidKey(key);
+		builder.buildDataSet(key, d);
+	}
+
+	public void write(String key, boolean b) throws IOException {
+		checkOpen();
+		checkValidKey(key);
+		builder.buildDataSet(key, b);
+	}
+
+	public void write(String key, ByteBuffer data) throws IOException {
+		checkOpen();
+		checkValidKey(key);
+		builder.buildDataSet(key, data);
+	}
+
+	public void write(String key, String[] array) throws IOException {
+		checkOpen();
+		checkValidKey(key);
+		builder.buildDataSet(new DataObject(key + "*", array));
+	}
+
+	public void write(String key, char[] array) throws IOException {
+		checkOpen();
+		checkValidKey(key);
+		builder.buildDataSet(new DataObject(key + "*", array));
+	}
+
+	public void write(String key, byte[] array) throws IOException {
+		checkOpen();
+		checkValidKey(key);
+		builder.buildDataSet(new DataObject(key + "*", array));
+	}
+
+	public void write(String key, short[] array) throws IOException {
+		checkOpen();
+		checkValidKey(key);
+		builder.buildDataSet(new DataObject(key + "*", array));
+	}
+
+	public void write(String key, int[] array) throws IOException {
+		checkOpen();
+		checkValidKey(key);
+		builder.buildDataSet(new DataObject(key + "*", array));
+	}
+
+	public void write(String key, long[] array) throws IOException {
+		checkOpen();
+		checkValidKey(key);
+		builder.buildDataSet(new DataObject(key + "*", array));
+	}
+
+	public void write(String key, float[] array) throws IOException {
+		checkOpen();
+		checkValidKey(key);
+		builder.buildDataSet(new DataObject(key + "*", array));
+	}
+
+	public void write(String key, double[] array) throws IOException {
+		checkOpen();
+		checkValidKey(key);
+		builder.buildDataSet(new DataObject(key + "*", array));
+	}
+
+	public void write(String key, boolean[] array) throws IOException {
+		checkOpen();
+		checkValidKey(key);
+		builder.buildDataSet(new DataObject(key + "*", array));
+	}
+
+	/**
+	 * Writes a DataObject, like one read by a {@link PSFStreamReader}
+	 */
+	public void write(DataObject object) throws IOException {
+		checkOpen();
+		builder.buildDataSet(object);
+	}
+
+	private void checkOpen() {
+		if (closed)
+			throw new IllegalStateException("The writer is closed");
+	}
+
+	private void checkValidKey(String key) {
+		if (key.contains("*"))
+			throw new RuntimeException("The key " + key + " is invalid!");
+	}
+
+	/**
+	 * Closes all open rooms and the file, closing it again has no effect
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			for (; depth > 0; depth--)
+				builder.buildRoomEnd();
+			builder.buildRoomEnd();
+		} finally {
+			writer.close();
+		}
+	}
+}
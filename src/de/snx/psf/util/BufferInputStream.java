@@ -0,0 +1,47 @@
+package de.snx.psf.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the bytes of a buffer from its position to its limit
+ *
+ * @author Sunnix
+ *
+ */
+class BufferInputStream extends InputStream {
+
+	private final ByteBuffer buffer;
+
+	BufferInputStream(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	@Override
+	public int read() {
+		return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) {
+		if (length == 0)
+			return 0;
+		if (!buffer.hasRemaining())
+			return -1;
+		length = Math.min(length, buffer.remaining());
+		buffer.get(bytes, offset, length);
+		return length;
+	}
+
+	@Override
+	public long skip(long count) {
+		int step = (int) Math.max(0, Math.min(count, buffer.remaining()));
+		buffer.position(buffer.position() + step);
+		return step;
+	}
+
+	@Override
+	public int available() {
+		return buffer.remaining();
+	}
+}
@@ -0,0 +1,27 @@
+package de.snx.psf.util;
+
+/**
+ * Receives the changes of the rooms, when it is set on the topRoom with
+ * {@link ObjectRoom#setChangeLog(ChangeLog)}.<br>
+ * The methods are called after the change. Changes made by the methods of
+ * {@link ObjectRoom} are received while the room is still locked, so they are
+ * received in the order they were made. Changes made directly on the lists of
+ * a room are not received.
+ *
+ * @author Sunnix
+ *
+ */
+public interface ChangeLog {
+
+	/**
+	 * The DataObject was added to the room or its data was changed
+	 */
+	void dataWritten(ObjectRoom room, DataObject dataObject);
+
+	void roomCreated(ObjectRoom room);
+
+	/**
+	 * The room was removed, its parent is still the room it was removed from
+	 */
+	void roomRemoved(ObjectRoom room);
+}
@@ -4,24 +4,135 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import de.snx.psf.PSFFileIO;
+import de.snx.psf.PSFMetrics;
 
 /**
- * This class is used to write the data into the file or read the data out
- * 
+ * This class is used to write the data into the file or read the data out<br>
+ * <br>
+ * Files of the version 3 are text files, where every text is prefixed by its
+ * length as a single character.<br>
+ * Files of the version 4 are binary. After the identifier and the file
+ * information, the rooms and data objects follow as a list of entries which
+ * starts with a one byte tag:<br>
+ * - the {@link DataType#ID} for a data object, followed by the key and the
+ * value. Characters, shorts, integers and longs are written as LEB128 number,
+ * the signed ones ZigZag encoded, so small values take one byte. Texts and
+ * binary data are written as byte length and bytes. The other values are
+ * written in their native size<br>
+ * - {@link #TAG_ARRAY} for a packed array, followed by the {@link DataType#ID}
+ * of the elements, the key, the count of elements and the elements<br>
+ * - {@link #TAG_ROOM} for a room, followed by the name, the byte length of the
+ * content as 8 bytes, so it can be patched after the content was written, and
+ * the content itself<br>
+ * - {@link #TAG_COMPRESSED_ROOM} for a room, whose content is compressed with
+ * Deflate, followed by the name, the byte length of the rest of the entry,
+ * the byte length of the uncompressed content and the compressed content.
+ * Only the rooms in the topRoom are compressed, if {@link #setCompressed(boolean)}
+ * is set, so every room can still be read on its own<br>
+ * - {@link #TAG_END} to close the current room<br>
+ * The entries end with the end of the topRoom. If the flag
+ * {@link #FLAG_INDEX} is set, a {@link RoomIndex} follows.<br>
+ * If the flag {@link #FLAG_KEYS} is set, the header ends with a
+ * {@link KeyTable}, the keys and the names of the rooms are then written as
+ * their id in it, if they are in it.<br>
+ * All other lengths and counts are written as LEB128 number, so there is no
+ * limit for the length of keys and texts.
+ *
  * @author Sunnix
  *
  */
 public class DataBuilder {
 
+	public static final int TAG_COMPRESSED_ROOM = 0xFC;
+	public static final int TAG_ARRAY = 0xFD;
+	public static final int TAG_ROOM = 0xFE;
+	public static final int TAG_END = 0xFF;
+
+	/**
+	 * flag of the header, the rooms in the topRoom are compressed
+	 */
+	public static final int FLAG_COMPRESSED = 1;
+	/**
+	 * flag of the header, the file ends with a {@link RoomIndex}
+	 */
+	public static final int FLAG_INDEX = 2;
+	/**
+	 * flag of the header, the header ends with a {@link KeyTable}
+	 */
+	public static final int FLAG_KEYS = 4;
+
+	/**
+	 * texts from this byte length on are kept as UTF-8 bytes, when they are read
+	 * from a channel, so they can be read in chunks
+	 */
+	private static final int LARGE_TEXT = 1 << 16;
+
 	private PSFFileIO fileIO;
 	private BufferedWriter writer;
 	private BufferedReader reader;
 	private InputStream stream;
 
+	private DataWriter out;
+	private DataReader in;
+
+	/**
+	 * version of the file, which is read
+	 */
+	private String fileVersion = PSFFileIO.VERSION;
+	private int detailedV_0, detailedV_1, detailedV_2;
+
+	/**
+	 * positions of the length fields of the rooms which are not closed yet
+	 */
+	private ArrayDeque<Long> openRooms = new ArrayDeque<>();
+
+	private boolean compressed;
+	/**
+	 * the output of the file, while the content of a compressed room is collected
+	 * in the memory
+	 */
+	private DataWriter compressedOut;
+	private long compressedLengthPosition;
+
+	/**
+	 * the index of the rooms, which are written, or, if the file has an index,
+	 * <b>true</b> after the header was read
+	 */
+	private RoomIndex index;
+	private boolean indexed;
+
+	/**
+	 * the dictionary of the keys or null
+	 */
+	private KeyTable keys;
+
+	/**
+	 * the metrics, which receive the time of the room in the topRoom, which is
+	 * written, and the start of the room
+	 */
+	private PSFMetrics metrics;
+	private String measuredRoom;
+	private long measuredStart;
+
+	/**
+	 * the rooms may be read by several threads
+	 */
+	private boolean parallel;
+
 	public DataBuilder(PSFFileIO fileIO) {
 		this.fileIO = fileIO;
+		if (fileIO != null && fileIO.getFileVersion() != null)
+			setFileVersion(fileIO.getFileVersion());
 	}
 
 	public DataBuilder(PSFFileIO fileIO, BufferedWriter writer) {
@@ -39,12 +150,36 @@ public class DataBuilder {
 		this.stream = stream;
 	}
 
+	public DataBuilder(PSFFileIO fileIO, DataWriter out) {
+		this(fileIO);
+		this.out = out;
+	}
+
+	/**
+	 * @param in input of the binary format or, if a charset is set, of the text
+	 *           format
+	 */
+	public DataBuilder(PSFFileIO fileIO, DataReader in) {
+		this(fileIO);
+		this.in = in;
+	}
+
+	/**
+	 * @return <b>true</b> if this builder writes or reads the binary format
+	 */
+	public boolean isBinary() {
+		return out != null || (in != null && !in.isText());
+	}
+
 	/**
 	 * For Rooms or basic information
 	 */
 	public void buildDataText(String text) throws IOException {
 		if (writer == null)
 			throw new NullPointerException("no writer is defined");
+		if (text.length() > Character.MAX_VALUE)
+			throw new IOException("A text of the version 3 can't be longer than " + (int) Character.MAX_VALUE
+					+ " characters");
 		writer.write(text.length());
 		writer.write(text);
 	}
@@ -56,8 +191,16 @@ public class DataBuilder {
 	 * {@value Integer#MAX_VALUE} characters
 	 */
 	public void buildDataSet(DataObject object) throws IOException {
+		if (out != null) {
+			buildBinaryDataSet(object);
+			return;
+		}
 		if (writer == null)
 			throw new NullPointerException("no writer is defined");
+		if (object.isArray())
+			throw new IOException("packed arrays can only be written in the binary format");
+		if (object.getType() == DataType.BINARY)
+			throw new IOException("binary data can only be written in the binary format");
 		buildDataText(object.getKey());
 		DataType type = object.getType();
 		buildDataText(String.valueOf(type.ID));
@@ -74,21 +217,576 @@ public class DataBuilder {
 		}
 	}
 
+	/**
+	 * The identifier is written in the same way in every version, so the
+	 * version of the file can be detected before the file is read
+	 */
+	public void buildIdentifier(String identifier) throws IOException {
+		if (out == null)
+			throw new NullPointerException("no output is defined");
+		out.writeByte(identifier.length());
+		for (int i = 0; i < identifier.length(); i++)
+			out.writeByte(identifier.charAt(i));
+	}
+
+	/**
+	 * Writes the identifier and the file information in the binary format
+	 *
+	 * @param fileCreator creator of the file
+	 */
+	public void buildHeader(String fileCreator) throws IOException {
+		buildIdentifier(PSFFileIO.IDENTIFIER); // to filter out, if the file is from the right format
+		buildString(PSFFileIO.VERSION);
+		buildString(PSFFileIO.UPDATED);
+		buildString(PSFFileIO.CREATOR);
+		buildString(fileCreator);
+		buildByte((compressed ? FLAG_COMPRESSED : 0) | (index != null ? FLAG_INDEX : 0)
+				| (keys != null ? FLAG_KEYS : 0));
+		if (keys != null)
+			keys.write(out);
+	}
+
+	/**
+	 * Writes the keys and the names of the rooms as their id in the dictionary,
+	 * which is written into the header. Keys, which are not in the dictionary,
+	 * are still written as text
+	 *
+	 * @param keys the dictionary or null
+	 */
+	public void setKeys(KeyTable keys) {
+		this.keys = keys;
+	}
+
+	/**
+	 * @return the dictionary, which is written or, after the header was read, of
+	 *         the file, or null
+	 */
+	public KeyTable getKeys() {
+		return keys;
+	}
+
+	/**
+	 * Writes a key or the name of a room
+	 */
+	public void buildKey(String key) throws IOException {
+		if (out == null)
+			throw new NullPointerException("no output is defined");
+		int id = keys == null ? -1 : keys.find(key);
+		if (id >= 0) {
+			out.writeSignedVarInt(-id - 1);
+			return;
+		}
+		byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+		out.writeSignedVarInt(bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * For Rooms or basic information in the binary format
+	 */
+	public void buildString(String text) throws IOException {
+		if (out == null)
+			throw new NullPointerException("no output is defined");
+		out.writeString(text);
+	}
+
+	/**
+	 * Copies already encoded entries from the file of the source
+	 */
+	public void buildCopy(FileChannel source, long position, long length) throws IOException {
+		if (out == null)
+			throw new NullPointerException("no output is defined");
+		out.transfer(source, position, length);
+	}
+
+	public void buildByte(int b) throws IOException {
+		if (out == null)
+			throw new NullPointerException("no output is defined");
+		out.writeByte(b);
+	}
+
+	/**
+	 * Compresses the rooms in the topRoom, which are opened after this call
+	 */
+	public void setCompressed(boolean compressed) {
+		this.compressed = compressed;
+	}
+
+	/**
+	 * @return <b>true</b> if the rooms in the topRoom are compressed or, after
+	 *         the header was read, if the file has compressed rooms
+	 */
+	public boolean isCompressed() {
+		return compressed;
+	}
+
+	/**
+	 * Writes a {@link RoomIndex} behind the topRoom. The rooms have to be added
+	 * by {@link #indexRoom(String, long)} and the index is written by
+	 * {@link #buildIndex()}
+	 */
+	public void setIndexed(boolean indexed) {
+		index = indexed ? new RoomIndex() : null;
+	}
+
+	/**
+	 * @return <b>true</b> if the header of the file, which is read, has the flag
+	 *         {@link #FLAG_INDEX}
+	 */
+	public boolean isIndexed() {
+		return indexed;
+	}
+
+	/**
+	 * @return the count of levels of rooms, which are indexed starting with a
+	 *         room opened next, 0 if no room is indexed
+	 */
+	public int getIndexLevels() {
+		if (index == null || compressedOut != null)
+			return 0;
+		return Math.max(0, RoomIndex.DEPTH + 1 - openRooms.size());
+	}
+
+	/**
+	 * @param path  the path of the room like "profiles/p42/"
+	 * @param entry the position of the tag of the room
+	 */
+	public void indexRoom(String path, long entry) {
+		index.add(path, entry);
+	}
+
+	/**
+	 * Writes the index and its position, after the topRoom was closed
+	 */
+	public void buildIndex() throws IOException {
+		if (out == null)
+			throw new NullPointerException("no output is defined");
+		long position = out.position();
+		index.write(out);
+		out.writeLong(position);
+	}
+
+	/**
+	 * Reads the index at the end of the file without moving the input. Only
+	 * possible if the input contains the whole file
+	 */
+	public RoomIndex getIndex() throws IOException {
+		DataReader reader = in.duplicate();
+		reader.seek(reader.size() - 8);
+		reader.seek(reader.readLong());
+		return RoomIndex.read(reader);
+	}
+
+	/**
+	 * Lets the rooms, which are read from or written by this builder, read or
+	 * write their child rooms on other threads, see {@link #slice(long)} and
+	 * {@link #part()}
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	/**
+	 * Takes the next bytes of the input, like the content of a room, so they can
+	 * be read by another thread. The input is moved behind them. The bytes are
+	 * only copied, if the input doesn't contain the whole file
+	 *
+	 * @return a builder, which reads only these bytes, starting at position 0,
+	 *         and is not parallel
+	 */
+	public DataBuilder slice(long length) throws IOException {
+		if (length > Integer.MAX_VALUE)
+			throw new IOException("The part of the file is too large");
+		DataBuilder slice = new DataBuilder(fileIO, in.slice((int) length));
+		slice.setFileVersion(fileVersion);
+		slice.keys = keys;
+		return slice;
+	}
+
+	/**
+	 * Creates a builder, which writes into the memory as if it continued this
+	 * builder at its current depth of rooms, so rooms can be written by another
+	 * thread and added in order by {@link #buildPart(DataBuilder)}. The positions
+	 * of the part start at 0
+	 */
+	public DataBuilder part() {
+		DataBuilder part = new DataBuilder(fileIO, new DataWriter());
+		part.compressed = compressed;
+		part.keys = keys;
+		for (int i = 0; i < openRooms.size(); i++)
+			part.openRooms.push(Long.MIN_VALUE); // closed by this builder
+		if (index != null && compressedOut == null)
+			part.index = new RoomIndex();
+		return part;
+	}
+
+	/**
+	 * Writes the content of a part and adds its rooms to the index
+	 *
+	 * @return the position of the part
+	 */
+	public long buildPart(DataBuilder part) throws IOException {
+		if (out == null)
+			throw new NullPointerException("no output is defined");
+		long position = out.position();
+		out.write(part.out.getData());
+		if (part.index != null)
+			index.add(part.index, position);
+		return position;
+	}
+
+	/**
+	 * @return <b>true</b> while the content of a compressed room is written, the
+	 *         positions are then positions in the uncompressed content
+	 */
+	public boolean isCompressing() {
+		return compressedOut != null;
+	}
+
+	/**
+	 * Opens a new room in the binary format. The content of the room is written
+	 * until {@link #buildRoomEnd()} is called
+	 */
+	public void buildRoomStart(String name) throws IOException {
+		if (out == null)
+			throw new NullPointerException("no output is defined");
+		if (openRooms.size() == 1 && (metrics = PSFFileIO.metrics) != null) {
+			measuredRoom = name;
+			measuredStart = System.nanoTime();
+		}
+		if (compressed && compressedOut == null && openRooms.size() == 1) {
+			out.writeByte(TAG_COMPRESSED_ROOM);
+			buildKey(name);
+			compressedLengthPosition = out.position();
+			out.writeLong(0); // placeholder for the length of the entry
+			compressedOut = out;
+			out = new DataWriter();
+			openRooms.push(-1L);
+			return;
+		}
+		out.writeByte(TAG_ROOM);
+		buildKey(name);
+		openRooms.push(out.position());
+		out.writeLong(0); // placeholder for the length of the content
+	}
+
+	/**
+	 * Closes the last opened room and writes the length of its content
+	 */
+	public void buildRoomEnd() throws IOException {
+		if (openRooms.isEmpty())
+			throw new IllegalStateException("there is no open room");
+		out.writeByte(TAG_END);
+		long lengthPosition = openRooms.pop();
+		if (lengthPosition < 0)
+			buildCompressed();
+		else
+			out.patchLong(lengthPosition, out.position() - lengthPosition - 8);
+		if (openRooms.size() == 1 && metrics != null) {
+			metrics.roomSerialized(measuredRoom, System.nanoTime() - measuredStart);
+			metrics = null;
+		}
+	}
+
+	/**
+	 * Writes the collected content of a compressed room into the file
+	 */
+	private void buildCompressed() throws IOException {
+		ByteBuffer content = out.getData();
+		out = compressedOut;
+		compressedOut = null;
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(content.array(), 0, content.limit());
+			deflater.finish();
+			out.writeVarInt(content.limit());
+			byte[] block = new byte[1 << 16];
+			while (!deflater.finished()) {
+				int count = deflater.deflate(block);
+				out.write(block, 0, count);
+			}
+		} finally {
+			deflater.end();
+		}
+		out.patchLong(compressedLengthPosition, out.position() - compressedLengthPosition - 8);
+	}
+
+	private void buildBinaryDataSet(DataObject object) throws IOException {
+		if (object.isArray()) {
+			buildBinaryArray(object);
+			return;
+		}
+		String key = object.getKey();
+		// the numbers are taken without creating their text
+		switch (object.getType()) {
+		case STRING:
+			ByteBuffer encoded = object.getEncodedText();
+			if (encoded != null) {
+				// the text is copied without decoding it
+				buildDataSetHead(key, DataType.STRING);
+				out.write(encoded);
+				break;
+			}
+			String data = object.getData();
+			buildDataSet(key, data == null ? "" : data);
+			break;
+		case CHARACTER:
+			data = object.getData();
+			buildDataSet(key, data.isEmpty() ? 0 : object.getDataAsCharacter());
+			break;
+		case BYTE:
+			buildDataSet(key, object.getDataAsByte());
+			break;
+		case SHORT:
+			buildDataSet(key, object.getDataAsShort());
+			break;
+		case INTEGER:
+			buildDataSet(key, object.getDataAsInteger());
+			break;
+		case LONG:
+			buildDataSet(key, object.getDataAsLong());
+			break;
+		case FLOAT:
+			buildDataSet(key, object.getDataAsFloat());
+			break;
+		case DOUBLE:
+			buildDataSet(key, object.getDataAsDouble());
+			break;
+		case BOOLEAN:
+			buildDataSet(key, object.getDataAsBoolean());
+			break;
+		case BINARY:
+			buildDataSet(key, object.getDataAsBinary());
+			break;
+		}
+	}
+
+	/*
+	 * The values are written in the binary format directly, without a DataObject
+	 */
+
+	public void buildDataSet(String key, String value) throws IOException {
+		buildDataSetHead(key, DataType.STRING);
+		out.writeString(value);
+	}
+
+	public void buildDataSet(String key, char value) throws IOException {
+		buildDataSetHead(key, DataType.CHARACTER);
+		out.writeVarInt(value);
+	}
+
+	public void buildDataSet(String key, byte value) throws IOException {
+		buildDataSetHead(key, DataType.BYTE);
+		out.writeByte(value);
+	}
+
+	public void buildDataSet(String key, short value) throws IOException {
+		buildDataSetHead(key, DataType.SHORT);
+		out.writeSignedVarInt(value);
+	}
+
+	public void buildDataSet(String key, int value) throws IOException {
+		buildDataSetHead(key, DataType.INTEGER);
+		out.writeSignedVarInt(value);
+	}
+
+	public void buildDataSet(String key, long value) throws IOException {
+		buildDataSetHead(key, DataType.LONG);
+		out.writeSignedVarLong(value);
+	}
+
+	public void buildDataSet(String key, float value) throws IOException {
+		buildDataSetHead(key, DataType.FLOAT);
+		out.writeFloat(value);
+	}
+
+	public void buildDataSet(String key, double value) throws IOException {
+		buildDataSetHead(key, DataType.DOUBLE);
+		out.writeDouble(value);
+	}
+
+	public void buildDataSet(String key, boolean value) throws IOException {
+		buildDataSetHead(key, DataType.BOOLEAN);
+		out.writeByte(value ? 1 : 0);
+	}
+
+	/**
+	 * Writes the bytes from the position to the limit, the position of the value
+	 * isn't changed
+	 */
+	public void buildDataSet(String key, ByteBuffer value) throws IOException {
+		buildDataSetHead(key, DataType.BINARY);
+		out.writeVarInt(value.remaining());
+		out.write(value.duplicate());
+	}
+
+	private void buildDataSetHead(String key, DataType type) throws IOException {
+		if (out == null)
+			throw new NullPointerException("no output is defined");
+		out.writeByte(type.ID);
+		buildKey(key);
+	}
+
+	private void buildBinaryArray(DataObject object) throws IOException {
+		DataType type = object.getType();
+		out.writeByte(TAG_ARRAY);
+		out.writeByte(type.ID);
+		buildKey(object.getKey());
+		out.writeVarInt(object.getArrayLength());
+		switch (type) {
+		case STRING:
+			for (String s : object.getDataAsStringArray())
+				out.writeString(s == null ? "" : s);
+			break;
+		case CHARACTER:
+			out.writeChars(object.getDataAsCharacterArray());
+			break;
+		case BYTE:
+			byte[] bytes = object.getDataAsByteArray();
+			out.write(bytes, 0, bytes.length);
+			break;
+		case SHORT:
+			out.writeShorts(object.getDataAsShortArray());
+			break;
+		case INTEGER:
+			out.writeInts(object.getDataAsIntegerArray());
+			break;
+		case LONG:
+			out.writeLongs(object.getDataAsLongArray());
+			break;
+		case FLOAT:
+			out.writeFloats(object.getDataAsFloatArray());
+			break;
+		case DOUBLE:
+			out.writeDoubles(object.getDataAsDoubleArray());
+			break;
+		case BOOLEAN:
+			for (boolean b : object.getDataAsBooleanArray())
+				out.writeByte(b ? 1 : 0);
+			break;
+		}
+	}
+
 	/**
 	 * For Rooms or basic information
 	 */
 	public String getDataText() throws IOException {
-		if (reader == null && stream == null)
-			throw new NullPointerException("no reader/stream is defined");
-		String data = new String();
 		int lenght;
-		lenght = reader == null ? stream.read() : reader.read();
+		lenght = readTextChar();
 		if (lenght <= 0)
-			data = "";
-		else
-			for (int i = 0; i < lenght; i++)
-				data += (char) (reader == null ? stream.read() : reader.read());
-		return data;
+			return "";
+		return readText(lenght);
+	}
+
+	private int readTextChar() throws IOException {
+		if (in != null)
+			return in.readTextChar();
+		if (reader != null)
+			return reader.read();
+		if (stream != null)
+			return stream.read();
+		throw new NullPointerException("no reader/stream is defined");
+	}
+
+	/**
+	 * Reads the characters in one piece instead of char by char
+	 */
+	private String readText(int lenght) throws IOException {
+		if (in != null)
+			return in.readText(lenght);
+		char[] text = new char[lenght];
+		int done = 0;
+		if (reader != null) {
+			while (done < lenght) {
+				int count = reader.read(text, done, lenght - done);
+				if (count < 0)
+					break;
+				done += count;
+			}
+		} else {
+			byte[] bytes = new byte[lenght];
+			while (done < lenght) {
+				int count = stream.read(bytes, done, lenght - done);
+				if (count < 0)
+					break;
+				done += count;
+			}
+			for (int i = 0; i < done; i++)
+				text[i] = (char) (bytes[i] & 0xFF);
+		}
+		return new String(text, 0, done);
+	}
+
+	/**
+	 * Reads the identifier and the file information of a file of any version.
+	 * For files of the version 3, the input is switched to text.
+	 *
+	 * @param textCharset charset of the text, if it is a file of the version 3
+	 * @return the version, updated, creator and file creator of the file
+	 * @throws FileFormatException if it is no file of the PSFFileIO format
+	 */
+	public String[] getHeader(Charset textCharset) throws IOException, FileFormatException {
+		if (in == null)
+			throw new NullPointerException("no input is defined");
+		String identifier = getIdentifier();
+		String[] header = new String[4];
+		if (identifier.equals(PSFFileIO.IDENTIFIER)) {
+			for (int i = 0; i < header.length; i++)
+				header[i] = getString();
+			int flags = getByte();
+			compressed = (flags & FLAG_COMPRESSED) != 0;
+			indexed = (flags & FLAG_INDEX) != 0;
+			keys = (flags & FLAG_KEYS) != 0 ? KeyTable.read(in) : null;
+		} else if (identifier.equals(PSFFileIO.V3_IDENTIFIER) || identifier.equals(PSFFileIO.OLD_IDENTIFIER)) {
+			in.setCharset(textCharset);
+			header[0] = getDataText().substring("Version: ".length());
+			header[1] = getDataText().substring("Updated: ".length());
+			header[2] = getDataText().substring("Creator: ".length());
+			header[3] = getDataText().substring("File Creator: ".length());
+		} else
+			throw new FileFormatException("The file does not correspond to the PSFFileIO format");
+		setFileVersion(header[0]);
+		return header;
+	}
+
+	/**
+	 * The identifier is stored in the same way in every version, its length as
+	 * one byte followed by the ASCII characters
+	 */
+	private String getIdentifier() throws IOException {
+		if (!in.hasRemaining())
+			return "";
+		int length = in.readUnsignedByte();
+		char[] identifier = new char[length];
+		for (int i = 0; i < length && in.hasRemaining(); i++)
+			identifier[i] = (char) in.readUnsignedByte();
+		return new String(identifier);
+	}
+
+	/**
+	 * Sets the version of the file, which decides how the data objects of old
+	 * files are read
+	 */
+	public void setFileVersion(String version) {
+		fileVersion = version;
+		String[] vNum = version.split("[.]");
+		if (vNum.length > 0)
+			detailedV_0 = Integer.parseInt(vNum[0]);
+		if (vNum.length > 1)
+			detailedV_1 = Integer.parseInt(vNum[1]);
+		if (vNum.length > 2)
+			detailedV_2 = Integer.parseInt(vNum[2]);
+	}
+
+	/**
+	 * @see PSFFileIO#isVerionOrLower(int, int, int)
+	 */
+	public boolean isVersionOrLower(int m, int c, int f) {
+		return detailedV_0 <= m && detailedV_1 <= c && detailedV_2 <= f;
 	}
 
 	/**
@@ -98,25 +796,266 @@ public class DataBuilder {
 	 * {@value Integer#MAX_VALUE}
 	 */
 	public DataObject getDataObject() throws IOException {
-		String key, data = new String();
+		String key, data;
 		DataType type;
-		int lenght;
-		if (reader == null && stream == null)
-			throw new NullPointerException("no reader/stream is defined");
 		key = getDataText();
-		if (fileIO.isVerionOrLower(3, 1, 4))
+		if (isVersionOrLower(3, 1, 4))
 			type = DataType.valueOf(getDataText());
 		else
 			type = DataType.values()[Integer.parseInt(getDataText())];
-		if (fileIO.getFileVersion().equals("3.0") || type.equals(DataType.STRING) == false) {
+		if (fileVersion.equals("3.0") || type.equals(DataType.STRING) == false) {
 			data = getDataText();
 		} else {
-			lenght = Integer.parseInt(getDataText());
-			for (int i = 0; i < lenght; i++) {
-				data += (char) (reader == null ? stream.read() : reader.read());
-			}
+			data = readText(Integer.parseInt(getDataText()));
 		}
 		return new DataObject(key, type, data);
 	}
 
+	/**
+	 * For Rooms or basic information in the binary format
+	 */
+	public String getString() throws IOException {
+		if (in == null)
+			throw new NullPointerException("no input is defined");
+		return in.readString();
+	}
+
+	/**
+	 * Reads a key or the name of a room in the binary format
+	 */
+	public String getKey() throws IOException {
+		if (in == null)
+			throw new NullPointerException("no input is defined");
+		int length = in.readSignedVarInt();
+		if (length < 0) {
+			if (keys == null)
+				throw new IOException("The key " + (-length - 1) + " is used without a dictionary");
+			return keys.get(-length - 1);
+		}
+		String key = in.readString(length);
+		return keys == null ? key : keys.intern(key);
+	}
+
+	public int getByte() throws IOException {
+		if (in == null)
+			throw new NullPointerException("no input is defined");
+		return in.readUnsignedByte();
+	}
+
+	/**
+	 * @return the tag of the next entry, which is {@link #TAG_ROOM},
+	 *         {@link #TAG_COMPRESSED_ROOM}, {@link #TAG_END}, {@link #TAG_ARRAY}
+	 *         or the {@link DataType#ID} of a data object
+	 */
+	public int getTag() throws IOException {
+		return getByte();
+	}
+
+	/**
+	 * Reads the head of a room, after its {@link #TAG_ROOM} was read
+	 *
+	 * @return the name of the room
+	 */
+	public String getRoomStart() throws IOException {
+		String name = getKey();
+		getRoomLength(); // only needed to skip the room
+		return name;
+	}
+
+	/**
+	 * Reads the byte length of the content of a room, after its name was read.
+	 * For a compressed room it is the length of the rest of the entry
+	 */
+	public long getRoomLength() throws IOException {
+		return in.readLong();
+	}
+
+	/**
+	 * Decompresses the content of a compressed room, after its length was read
+	 *
+	 * @param length the length returned by {@link #getRoomLength()}
+	 * @return a builder, which reads the content of the room
+	 */
+	public DataBuilder inflate(long length) throws IOException {
+		long start = in.position();
+		int size = in.readVarInt();
+		byte[] compressed = in.readBytes((int) (length - (in.position() - start)));
+		byte[] content = new byte[size];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			int done = 0;
+			while (done < size) {
+				int count = inflater.inflate(content, done, size - done);
+				if (count == 0 && (inflater.finished() || inflater.needsInput()))
+					throw new IOException("The compressed room is incomplete");
+				done += count;
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("The compressed room is corrupt", e);
+		} finally {
+			inflater.end();
+		}
+		DataBuilder builder = new DataBuilder(fileIO, new DataReader(ByteBuffer.wrap(content)));
+		builder.setFileVersion(fileVersion);
+		builder.parallel = parallel;
+		builder.keys = keys;
+		return builder;
+	}
+
+	/**
+	 * @return the position of the output or, if there is none, of the input
+	 */
+	public long position() {
+		return out != null ? out.position() : in.position();
+	}
+
+	/**
+	 * Moves the input to the position, only possible if the input contains the
+	 * whole file
+	 */
+	public void seek(long position) {
+		in.seek(position);
+	}
+
+	public void skip(long bytes) throws IOException {
+		in.skip(bytes);
+	}
+
+	/**
+	 * @return a new builder on the same input with its own position, so rooms can
+	 *         be read by several threads at once. Only possible if the input
+	 *         contains the whole file
+	 */
+	public DataBuilder fork() {
+		DataBuilder fork = new DataBuilder(fileIO, in.duplicate());
+		fork.setFileVersion(fileVersion);
+		fork.keys = keys;
+		return fork;
+	}
+
+	/**
+	 * Reads a data object of the binary format, after its tag was read
+	 *
+	 * @param tag the {@link DataType#ID} of the data object or {@link #TAG_ARRAY}
+	 */
+	public DataObject getDataObject(int tag) throws IOException {
+		if (tag == TAG_ARRAY)
+			return getArrayObject();
+		if (tag >= DataType.values().length)
+			throw new IOException("Unknown entry tag " + tag);
+		DataType type = DataType.values()[tag];
+		String key = getKey();
+		ByteBuffer shared = in.shared();
+		if (shared != null) {
+			// the value is only skipped and decoded when it is used
+			int position = (int) in.position();
+			skipValue(type);
+			return new DataObject(key, type, shared, position);
+		}
+		long bits;
+		switch (type) {
+		case STRING:
+			int length = in.readVarInt();
+			if (length < LARGE_TEXT)
+				return new DataObject(key, type, in.readString(length));
+			// kept with its length like in the file, so it is decoded when it is used
+			ByteBuffer encoded = ByteBuffer.allocate(DataWriter.varIntSize(length) + length);
+			DataWriter.putVarInt(encoded, length);
+			in.readBytes(encoded.array(), encoded.position(), length);
+			return new DataObject(key, type, encoded, 0);
+		case CHARACTER:
+			bits = in.readVarInt();
+			break;
+		case BYTE:
+			bits = in.readByte();
+			break;
+		case SHORT:
+		case INTEGER:
+			bits = in.readSignedVarInt();
+			break;
+		case LONG:
+			bits = in.readSignedVarLong();
+			break;
+		case FLOAT:
+			bits = in.readInt();
+			break;
+		case DOUBLE:
+			bits = in.readLong();
+			break;
+		case BOOLEAN:
+			bits = in.readBoolean() ? 1 : 0;
+			break;
+		case BINARY:
+			return new DataObject(key, in.readBuffer(in.readVarInt()));
+		default:
+			throw new IOException("Unknown entry tag " + tag); // this should never happen
+		}
+		return new DataObject(key, type, bits);
+	}
+
+	/**
+	 * Moves behind the value of a data object
+	 */
+	private void skipValue(DataType type) throws IOException {
+		switch (type) {
+		case STRING:
+		case BINARY:
+			in.skip(in.readVarInt());
+			break;
+		case CHARACTER:
+		case SHORT:
+		case INTEGER:
+		case LONG:
+			in.readVarLong();
+			break;
+		case BYTE:
+		case BOOLEAN:
+			in.skip(1);
+			break;
+		case FLOAT:
+			in.skip(4);
+			break;
+		case DOUBLE:
+			in.skip(8);
+			break;
+		}
+	}
+
+	private DataObject getArrayObject() throws IOException {
+		int typeID = getByte();
+		if (typeID >= DataType.values().length)
+			throw new IOException("Unknown array type " + typeID);
+		String key = getKey();
+		int length = in.readVarInt();
+		switch (DataType.values()[typeID]) {
+		case STRING:
+			String[] strings = new String[length];
+			for (int i = 0; i < length; i++)
+				strings[i] = getString();
+			return new DataObject(key, strings);
+		case CHARACTER:
+			return new DataObject(key, in.readChars(length));
+		case BYTE:
+			return new DataObject(key, in.readBytes(length));
+		case SHORT:
+			return new DataObject(key, in.readShorts(length));
+		case INTEGER:
+			return new DataObject(key, in.readInts(length));
+		case LONG:
+			return new DataObject(key, in.readLongs(length));
+		case FLOAT:
+			return new DataObject(key, in.readFloats(length));
+		case DOUBLE:
+			return new DataObject(key, in.readDoubles(length));
+		case BOOLEAN:
+			boolean[] booleans = new boolean[length];
+			for (int i = 0; i < length; i++)
+				booleans[i] = in.readBoolean();
+			return new DataObject(key, booleans);
+		default:
+			throw new IOException("Unknown array type " + typeID); // this should never happen
+		}
+	}
+
 }
@@ -1,12 +1,65 @@
 package de.snx.psf.util;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 
+/**
+ * A value of a room with its key.<br>
+ * The value is kept as text or, for all types except {@link DataType#STRING},
+ * as the bits of the primitive value, e.g. when it was written as int. A
+ * value, which was read from a file in the memory, can also be kept as the
+ * position of its encoded value in the file, it is decoded the first time it
+ * is used. A text is parsed only once, the text of a primitive value is only
+ * created, when it is asked for, like for the format of the version 3.
+ *
+ * @author Sunnix
+ *
+ */
 public class DataObject {
 
 	private String key;
 	private DataType type;
+	/**
+	 * the value as text, null if it wasn't asked for yet
+	 */
 	private String data;
+	/**
+	 * the primitive value: the value of a whole number, the character, the raw
+	 * bits of a decimal number or 1 for <b>true</b>. Valid if there is no text or
+	 * if hasBits is set, so a primitive value is kept without a volatile write
+	 */
+	private long bits;
+	private volatile boolean hasBits;
+	/**
+	 * the data, which contains the encoded value at the sourcePosition, as long
+	 * as the value isn't decoded
+	 */
+	private volatile ByteBuffer source;
+	private int sourcePosition;
+	/**
+	 * the bytes of {@link DataType#BINARY}, read-only
+	 */
+	private ByteBuffer binary;
+	/**
+	 * the elements of a packed array, the type is the type of the elements
+	 */
+	private Object array;
+
+	/**
+	 * the room, which is told about changes of the data
+	 */
+	private ObjectRoom owner;
+	private boolean immutable;
+	/**
+	 * the last immutable copy, as long as the data is unchanged
+	 */
+	private DataObject immutableCopy;
 
 	public DataObject(String key, DataType type, String data) {
 		this.key = key;
@@ -14,6 +67,135 @@ public class DataObject {
 		this.data = data;
 	}
 
+	/*
+	 * The primitive values are kept without creating their text
+	 */
+
+	public DataObject(String key, char value) {
+		this(key, DataType.CHARACTER, value);
+	}
+
+	public DataObject(String key, byte value) {
+		this(key, DataType.BYTE, value);
+	}
+
+	public DataObject(String key, short value) {
+		this(key, DataType.SHORT, value);
+	}
+
+	public DataObject(String key, int value) {
+		this(key, DataType.INTEGER, value);
+	}
+
+	public DataObject(String key, long value) {
+		this(key, DataType.LONG, value);
+	}
+
+	public DataObject(String key, float value) {
+		this(key, DataType.FLOAT, Float.floatToRawIntBits(value));
+	}
+
+	public DataObject(String key, double value) {
+		this(key, DataType.DOUBLE, Double.doubleToRawLongBits(value));
+	}
+
+	public DataObject(String key, boolean value) {
+		this(key, DataType.BOOLEAN, value ? 1 : 0);
+	}
+
+	/**
+	 * Binary data of the type {@link DataType#BINARY}
+	 *
+	 * @param value the bytes from the position to the limit, they are not copied
+	 */
+	public DataObject(String key, ByteBuffer value) {
+		this.key = key;
+		type = DataType.BINARY;
+		binary = value.slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * @param bits the primitive value, as described at {@link #getBits()}
+	 */
+	DataObject(String key, DataType type, long bits) {
+		this.key = key;
+		this.type = type;
+		this.bits = bits;
+	}
+
+	/**
+	 * A value, which is decoded from the source when it is used the first time
+	 *
+	 * @param source   the data, whose position is never moved
+	 * @param position the position of the encoded value in the source
+	 */
+	DataObject(String key, DataType type, ByteBuffer source, int position) {
+		this.key = key;
+		this.type = type;
+		this.source = source;
+		sourcePosition = position;
+	}
+
+	/**
+	 * A copy with the same value, which is still decoded on its own
+	 */
+	private DataObject(DataObject original) {
+		key = original.key;
+		type = original.type;
+		ByteBuffer source = original.source;
+		if (source != null) {
+			this.source = source;
+			sourcePosition = original.sourcePosition;
+			return;
+		}
+		data = original.data;
+		bits = original.bits;
+		hasBits = original.hasBits;
+		binary = original.binary;
+	}
+
+	private DataObject(String key, Object array, DataType type) {
+		this.key = key;
+		this.type = type;
+		this.array = array;
+	}
+
+	public DataObject(String key, String[] array) {
+		this(key, array, DataType.STRING);
+	}
+
+	public DataObject(String key, char[] array) {
+		this(key, array, DataType.CHARACTER);
+	}
+
+	public DataObject(String key, byte[] array) {
+		this(key, array, DataType.BYTE);
+	}
+
+	public DataObject(String key, short[] array) {
+		this(key, array, DataType.SHORT);
+	}
+
+	public DataObject(String key, int[] array) {
+		this(key, array, DataType.INTEGER);
+	}
+
+	public DataObject(String key, long[] array) {
+		this(key, array, DataType.LONG);
+	}
+
+	public DataObject(String key, float[] array) {
+		this(key, array, DataType.FLOAT);
+	}
+
+	public DataObject(String key, double[] array) {
+		this(key, array, DataType.DOUBLE);
+	}
+
+	public DataObject(String key, boolean[] array) {
+		this(key, array, DataType.BOOLEAN);
+	}
+
 	public String getKey() {
 		return key;
 	}
@@ -23,15 +205,234 @@ public class DataObject {
 	}
 
 	public void setType(DataType type) {
+		checkMutable();
+		data = getData(); // the bits belong to the old type
+		hasBits = false;
+		binary = null;
 		this.type = type;
+		changed();
 	}
 
+	/**
+	 * @return the value as text, binary data as Base64
+	 */
 	public String getData() {
+		if (source != null)
+			decode();
+		String data = this.data;
+		if (data == null && type == DataType.BINARY) {
+			ByteBuffer binary = getDataAsBinary();
+			byte[] bytes = new byte[binary.remaining()];
+			binary.get(bytes);
+			return Base64.getEncoder().encodeToString(bytes);
+		}
+		if (data == null && type != DataType.STRING) {
+			data = format(bits);
+			hasBits = true;
+			this.data = data;
+		}
 		return data;
 	}
 
 	public void setData(String data) {
+		checkMutable();
+		source = null;
+		hasBits = false;
+		binary = null;
 		this.data = data;
+		changed();
+	}
+
+	/**
+	 * Decodes the value from the source, several threads may decode it at once
+	 */
+	private void decode() {
+		ByteBuffer source = this.source;
+		if (source == null)
+			return;
+		DataReader in = new DataReader(source.duplicate());
+		in.seek(sourcePosition);
+		try {
+			switch (type) {
+			case STRING:
+				data = in.readString();
+				break;
+			case CHARACTER:
+				bits = in.readVarInt();
+				break;
+			case BYTE:
+				bits = in.readByte();
+				break;
+			case SHORT:
+			case INTEGER:
+				bits = in.readSignedVarInt();
+				break;
+			case LONG:
+				bits = in.readSignedVarLong();
+				break;
+			case FLOAT:
+				bits = in.readInt();
+				break;
+			case DOUBLE:
+				bits = in.readLong();
+				break;
+			case BOOLEAN:
+				bits = in.readBoolean() ? 1 : 0;
+				break;
+			case BINARY:
+				binary = in.readBuffer(in.readVarInt());
+				break;
+			}
+		} catch (IOException e) {
+			// the value was already read once, when its entry was skipped
+			throw new IllegalStateException("The value of \"" + key + "\" can't be decoded", e);
+		}
+		this.source = null;
+	}
+
+	/**
+	 * @return the text with its length, like it is written in the binary format,
+	 *         or null if the text is decoded already
+	 */
+	ByteBuffer getEncodedText() {
+		ByteBuffer source = this.source;
+		if (source == null || type != DataType.STRING)
+			return null;
+		ByteBuffer encoded = source.duplicate();
+		encoded.position(sourcePosition);
+		DataReader in = new DataReader(encoded.slice());
+		try {
+			int length = in.readVarInt();
+			encoded.limit(sourcePosition + (int) in.position() + length);
+		} catch (IOException e) {
+			throw new IllegalStateException("The value of \"" + key + "\" can't be decoded", e);
+		}
+		return encoded.slice();
+	}
+
+	/**
+	 * @return a Reader of the text. A text, which isn't decoded yet, is decoded
+	 *         in chunks from its UTF-8 bytes, without creating the whole String
+	 */
+	public Reader openReader() {
+		ByteBuffer encoded = getEncodedText();
+		if (encoded == null) {
+			String data = getData();
+			return new StringReader(data == null ? "" : data);
+		}
+		DataReader in = new DataReader(encoded);
+		try {
+			return new InputStreamReader(new BufferInputStream(in.readBuffer(in.readVarInt())),
+					StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new IllegalStateException("The value of \"" + key + "\" can't be decoded", e);
+		}
+	}
+
+	/**
+	 * @return the primitive value: the value of a whole number, the character,
+	 *         the raw int bits of a float, the raw long bits of a double or 1
+	 *         for <b>true</b>. The text is parsed the first time
+	 */
+	private long getBits() {
+		if (source != null)
+			decode();
+		String data = this.data;
+		if (data == null || hasBits)
+			return bits;
+		long parsed;
+		switch (type) {
+		case CHARACTER:
+			if (data.isEmpty())
+				throw new NullPointerException("The data is empty");
+			parsed = data.charAt(0);
+			break;
+		case FLOAT:
+			parsed = Float.floatToRawIntBits(Float.parseFloat(data));
+			break;
+		case DOUBLE:
+			parsed = Double.doubleToRawLongBits(Double.parseDouble(data));
+			break;
+		case BOOLEAN:
+			parsed = Boolean.parseBoolean(data) ? 1 : 0;
+			break;
+		case STRING:
+			throw new NumberFormatException("The data \"" + data + "\" is no primitive value");
+		default:
+			parsed = Long.parseLong(data);
+		}
+		bits = parsed;
+		hasBits = true;
+		return parsed;
+	}
+
+	/**
+	 * @return the primitive value as text of the type
+	 */
+	private String format(long bits) {
+		switch (type) {
+		case CHARACTER:
+			return String.valueOf((char) bits);
+		case FLOAT:
+			return Float.toString(Float.intBitsToFloat((int) bits));
+		case DOUBLE:
+			return Double.toString(Double.longBitsToDouble(bits));
+		case BOOLEAN:
+			return Boolean.toString(bits != 0);
+		default:
+			return Long.toString(bits);
+		}
+	}
+
+	/**
+	 * @return the value of a whole number in the range
+	 */
+	private long getWholeNumber(long min, long max) {
+		long value = getBits();
+		if (value < min || value > max)
+			throw new NumberFormatException("Value out of range. Value:\"" + getData() + "\"");
+		return value;
+	}
+
+	void setOwner(ObjectRoom owner) {
+		if (!immutable)
+			this.owner = owner;
+	}
+
+	private void checkMutable() {
+		if (immutable)
+			throw new UnsupportedOperationException("The DataObject \"" + key + "\" is immutable");
+	}
+
+	private void changed() {
+		immutableCopy = null;
+		if (owner != null)
+			owner.dataChanged(this);
+	}
+
+	/**
+	 * @return <b>true</b> if the DataObject can't be changed
+	 */
+	public boolean isImmutable() {
+		return immutable;
+	}
+
+	/**
+	 * An immutable copy of the DataObject, which is kept and returned again until
+	 * the data changes. A packed array is shared with the copy
+	 *
+	 * @return the copy or this DataObject, if it is immutable
+	 */
+	public DataObject toImmutable() {
+		if (immutable)
+			return this;
+		DataObject copy = immutableCopy;
+		if (copy == null) {
+			copy = array != null ? new DataObject(key, array, type) : new DataObject(this);
+			copy.immutable = true;
+			immutableCopy = copy;
+		}
+		return copy;
 	}
 
 	public String getDataAsString() {
@@ -39,6 +440,9 @@ public class DataObject {
 	}
 
 	public char getDataAsCharacter() {
+		if (type == DataType.CHARACTER)
+			return (char) getBits();
+		String data = getData();
 		if (data.isEmpty())
 			throw new NullPointerException("The data is empty");
 		return data.charAt(0);
@@ -46,7 +450,7 @@ public class DataObject {
 
 	public byte getDataAsByte() {
 		if (checkType(2, 5))
-			return Byte.parseByte(getData());
+			return (byte) getWholeNumber(Byte.MIN_VALUE, Byte.MAX_VALUE);
 		if (checkType(6, 7))
 			throw new NumberFormatException("The data \"" + getData() + "\" is a decimal number");
 		throw new NumberFormatException("The data \"" + getData() + "\" is no number");
@@ -54,7 +458,7 @@ public class DataObject {
 
 	public short getDataAsShort() {
 		if (checkType(2, 5))
-			return Short.parseShort(getData());
+			return (short) getWholeNumber(Short.MIN_VALUE, Short.MAX_VALUE);
 		if (checkType(6, 7))
 			throw new NumberFormatException("The data \"" + getData() + "\" is a decimal number");
 		throw new NumberFormatException("The data \"" + getData() + "\" is no number");
@@ -62,7 +466,7 @@ public class DataObject {
 
 	public int getDataAsInteger() {
 		if (checkType(2, 5))
-			return Integer.parseInt(getData());
+			return (int) getWholeNumber(Integer.MIN_VALUE, Integer.MAX_VALUE);
 		if (checkType(6, 7))
 			throw new NumberFormatException("The data \"" + getData() + "\" is a decimal number");
 		throw new NumberFormatException("The data \"" + getData() + "\" is no number");
@@ -70,30 +474,120 @@ public class DataObject {
 
 	public long getDataAsLong() {
 		if (checkType(2, 5))
-			return Long.parseLong(getData());
+			return getBits();
 		if (checkType(6, 7))
 			throw new NumberFormatException("The data \"" + getData() + "\" is a decimal number");
 		throw new NumberFormatException("The data \"" + getData() + "\" is no number");
 	}
 
 	public float getDataAsFloat() {
+		if (type == DataType.FLOAT)
+			return Float.intBitsToFloat((int) getBits());
+		if (checkType(2, 5))
+			return getBits();
 		if (checkType(2, 7))
 			return Float.parseFloat(getData());
 		throw new NumberFormatException("The data \"" + getData() + "\" is no number");
 	}
 
 	public double getDataAsDouble() {
+		if (type == DataType.DOUBLE)
+			return Double.longBitsToDouble(getBits());
+		if (checkType(2, 5))
+			return getBits();
 		if (checkType(2, 7))
-			return Double.parseDouble(getData());
+			return Double.parseDouble(getData()); // like the text of the float
 		throw new NumberFormatException("The data \"" + getData() + "\" is no number");
 	}
 
 	public boolean getDataAsBoolean() {
 		if (checkType(8, 8))
-			return Boolean.parseBoolean(getData());
+			return getBits() != 0;
 		throw new NumberFormatException("The data \"" + getData() + "\" is no boolean value");
 	}
 
+	/**
+	 * @return the bytes of binary data as read-only buffer from 0 to its limit.
+	 *         If the file is mapped into the memory, the buffer is a view of the
+	 *         file, so the bytes are not copied
+	 */
+	public ByteBuffer getDataAsBinary() {
+		if (type != DataType.BINARY)
+			throw new IllegalArgumentException("The data of \"" + key + "\" is no binary data");
+		if (source != null)
+			decode();
+		ByteBuffer binary = this.binary;
+		if (binary == null) {
+			// set as Base64 text by setData
+			binary = ByteBuffer.wrap(Base64.getDecoder().decode(data == null ? "" : data)).asReadOnlyBuffer();
+			this.binary = binary;
+		}
+		return binary.duplicate();
+	}
+
+	/**
+	 * @return <b>true</b> if this DataObject holds a packed array of its type
+	 */
+	public boolean isArray() {
+		return array != null;
+	}
+
+	/**
+	 * @return the packed array, like int[] for {@link DataType#INTEGER}
+	 */
+	public Object getArray() {
+		return array;
+	}
+
+	public int getArrayLength() {
+		return array == null ? 0 : Array.getLength(array);
+	}
+
+	public String[] getDataAsStringArray() {
+		return (String[]) getArray(DataType.STRING);
+	}
+
+	public char[] getDataAsCharacterArray() {
+		return (char[]) getArray(DataType.CHARACTER);
+	}
+
+	public byte[] getDataAsByteArray() {
+		return (byte[]) getArray(DataType.BYTE);
+	}
+
+	public short[] getDataAsShortArray() {
+		return (short[]) getArray(DataType.SHORT);
+	}
+
+	public int[] getDataAsIntegerArray() {
+		return (int[]) getArray(DataType.INTEGER);
+	}
+
+	public long[] getDataAsLongArray() {
+		return (long[]) getArray(DataType.LONG);
+	}
+
+	public float[] getDataAsFloatArray() {
+		return (float[]) getArray(DataType.FLOAT);
+	}
+
+	public double[] getDataAsDoubleArray() {
+		return (double[]) getArray(DataType.DOUBLE);
+	}
+
+	public boolean[] getDataAsBooleanArray() {
+		return (boolean[]) getArray(DataType.BOOLEAN);
+	}
+
+	private Object getArray(DataType arrayType) {
+		if (array == null)
+			throw new IllegalArgumentException("The data of \"" + key + "\" is no array");
+		if (type != arrayType)
+			throw new IllegalArgumentException(
+					"the array is a " + type + " and not compatible with " + arrayType);
+		return array;
+	}
+
 	/**
 	 * Check if the type is in this index
 	 * 
@@ -112,6 +606,11 @@ public class DataObject {
 
 	@Override
 	public String toString() {
-		return "DataObject[key: " + key + ", type: " + type.name() + ", data: " + data + "]";
+		if (array != null)
+			return "DataObject[key: " + key + ", type: " + type.name() + "[" + getArrayLength() + "]]";
+		if (type == DataType.BINARY)
+			return "DataObject[key: " + key + ", type: " + type.name() + ", bytes: " + getDataAsBinary().remaining()
+					+ "]";
+		return "DataObject[key: " + key + ", type: " + type.name() + ", data: " + getData() + "]";
 	}
 }
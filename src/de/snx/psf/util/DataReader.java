@@ -0,0 +1,478 @@
+package de.snx.psf.util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered input for the {@link DataBuilder}.<br>
+ * The data is read from the channel in large windows and the values are taken
+ * out of the window in bulk. For files of the version 3 the window is decoded
+ * into a {@link CharBuffer} with the charset of the file.
+ *
+ * @author Sunnix
+ *
+ */
+public class DataReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 18;
+
+	private ReadableByteChannel channel;
+	private ByteBuffer buffer;
+	/**
+	 * a view of the whole data, whose position is never moved
+	 */
+	private ByteBuffer shared;
+	/**
+	 * count of bytes, which were read from the channel
+	 */
+	private long read;
+	private boolean eof;
+
+	private CharsetDecoder decoder;
+	private CharBuffer chars;
+
+	/**
+	 * Reads from the channel
+	 */
+	public DataReader(ReadableByteChannel channel) {
+		this.channel = channel;
+		buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		buffer.flip();
+	}
+
+	/**
+	 * Reads from the content of the buffer, which has to contain the whole data
+	 */
+	public DataReader(ByteBuffer buffer) {
+		this.buffer = buffer;
+		eof = true;
+	}
+
+	/**
+	 * @return a new reader on the same data with its own position, only possible
+	 *         if the whole data is in the buffer
+	 */
+	public DataReader duplicate() {
+		if (channel != null)
+			throw new UnsupportedOperationException("duplicate is only possible on a buffer");
+		return new DataReader(buffer.duplicate());
+	}
+
+	/**
+	 * Takes the next bytes as a new reader, whose positions start at 0. The
+	 * bytes are shared, if the whole data is in the buffer, otherwise they are
+	 * copied
+	 */
+	public DataReader slice(int length) throws IOException {
+		if (channel != null)
+			return new DataReader(ByteBuffer.wrap(readBytes(length)));
+		if (buffer.remaining() < length)
+			throw new EOFException("Unexpected end of file");
+		ByteBuffer slice = buffer.slice();
+		slice.limit(length);
+		buffer.position(buffer.position() + length);
+		return new DataReader(slice);
+	}
+
+	public long position() {
+		return channel == null ? buffer.position() : read - buffer.remaining();
+	}
+
+	/**
+	 * @return a view of the whole data, whose position is never moved, so the
+	 *         values can be read later with a duplicate of it, or null if the
+	 *         data is read from a channel
+	 */
+	public ByteBuffer shared() {
+		if (channel != null)
+			return null;
+		if (shared == null)
+			shared = buffer.duplicate();
+		return shared;
+	}
+
+	/**
+	 * @return the size of the data, only possible if the whole data is in the
+	 *         buffer
+	 */
+	public long size() {
+		if (channel != null)
+			throw new UnsupportedOperationException("size is only possible on a buffer");
+		return buffer.limit();
+	}
+
+	/**
+	 * @return <b>true</b> if there are more bytes to read
+	 */
+	public boolean hasRemaining() throws IOException {
+		return buffer.hasRemaining() || fill();
+	}
+
+	/**
+	 * Reads the next window from the channel, the remaining bytes are moved to
+	 * the start of the buffer
+	 *
+	 * @return <b>false</b> if the end of the channel was reached
+	 */
+	private boolean fill() throws IOException {
+		if (eof)
+			return false;
+		buffer.compact();
+		int count = channel.read(buffer);
+		buffer.flip();
+		if (count < 0) {
+			eof = true;
+			return false;
+		}
+		read += count;
+		return true;
+	}
+
+	/**
+	 * Makes sure, that the window contains at least this count of bytes
+	 */
+	private void require(int bytes) throws IOException {
+		while (buffer.remaining() < bytes)
+			if (!fill())
+				throw new EOFException("Unexpected end of file");
+	}
+
+	public int readUnsignedByte() throws IOException {
+		require(1);
+		return buffer.get() & 0xFF;
+	}
+
+	public byte readByte() throws IOException {
+		require(1);
+		return buffer.get();
+	}
+
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	public short readShort() throws IOException {
+		require(2);
+		return buffer.getShort();
+	}
+
+	public char readChar() throws IOException {
+		require(2);
+		return buffer.getChar();
+	}
+
+	public int readInt() throws IOException {
+		require(4);
+		return buffer.getInt();
+	}
+
+	public long readLong() throws IOException {
+		require(8);
+		return buffer.getLong();
+	}
+
+	/**
+	 * Reads an unsigned LEB128 number, as written by
+	 * {@link DataWriter#writeVarInt(int)}
+	 */
+	public int readVarInt() throws IOException {
+		if (buffer.remaining() < 5)
+			return (int) readVarSlow(5);
+		int b = buffer.get();
+		if (b >= 0)
+			return b; // the common case of a single byte
+		int value = b & 0x7F;
+		for (int shift = 7; shift < 35; shift += 7) {
+			b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+		throw new IOException("The number is too long");
+	}
+
+	/**
+	 * Reads an unsigned LEB128 number, as written by
+	 * {@link DataWriter#writeVarLong(long)}
+	 */
+	public long readVarLong() throws IOException {
+		if (buffer.remaining() < 10)
+			return readVarSlow(10);
+		long value = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			int b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+		throw new IOException("The number is too long");
+	}
+
+	/**
+	 * Reads the LEB128 number byte by byte, near the end of the window
+	 */
+	private long readVarSlow(int maxBytes) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < maxBytes * 7; shift += 7) {
+			int b = readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+		throw new IOException("The number is too long");
+	}
+
+	/**
+	 * Reads a ZigZag encoded LEB128 number, as written by
+	 * {@link DataWriter#writeSignedVarInt(int)}
+	 */
+	public int readSignedVarInt() throws IOException {
+		int value = readVarInt();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Reads a ZigZag encoded LEB128 number, as written by
+	 * {@link DataWriter#writeSignedVarLong(long)}
+	 */
+	public long readSignedVarLong() throws IOException {
+		long value = readVarLong();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	public float readFloat() throws IOException {
+		require(4);
+		return buffer.getFloat();
+	}
+
+	public double readDouble() throws IOException {
+		require(8);
+		return buffer.getDouble();
+	}
+
+	public byte[] readBytes(int length) throws IOException {
+		byte[] bytes = new byte[length];
+		readBytes(bytes, 0, length);
+		return bytes;
+	}
+
+	/**
+	 * Reads the next bytes into the array
+	 */
+	public void readBytes(byte[] bytes, int offset, int length) throws IOException {
+		int start = Math.min(length, buffer.remaining());
+		buffer.get(bytes, offset, start);
+		if (start < length) {
+			if (channel == null)
+				throw new EOFException("Unexpected end of file");
+			// bigger than the window, so the rest is read directly
+			ByteBuffer rest = ByteBuffer.wrap(bytes, offset + start, length - start);
+			while (rest.hasRemaining()) {
+				int count = channel.read(rest);
+				if (count < 0)
+					throw new EOFException("Unexpected end of file");
+				read += count;
+			}
+		}
+	}
+
+	/**
+	 * @return the next bytes as a read-only buffer, which shares the bytes with
+	 *         the data, if the whole data is in the buffer, otherwise they are
+	 *         copied
+	 */
+	public ByteBuffer readBuffer(int length) throws IOException {
+		if (channel != null)
+			return ByteBuffer.wrap(readBytes(length)).asReadOnlyBuffer();
+		if (buffer.remaining() < length)
+			throw new EOFException("Unexpected end of file");
+		ByteBuffer bytes = buffer.slice();
+		bytes.limit(length);
+		buffer.position(buffer.position() + length);
+		return bytes.asReadOnlyBuffer();
+	}
+
+	/*
+	 * The arrays are copied through views of the window, as many elements at once
+	 * as the window contains
+	 */
+
+	public char[] readChars(int length) throws IOException {
+		char[] values = new char[length];
+		for (int done = 0, step; done < length; done += step) {
+			require(2);
+			step = Math.min(length - done, buffer.remaining() / 2);
+			buffer.asCharBuffer().get(values, done, step);
+			buffer.position(buffer.position() + step * 2);
+		}
+		return values;
+	}
+
+	public short[] readShorts(int length) throws IOException {
+		short[] values = new short[length];
+		for (int done = 0, step; done < length; done += step) {
+			require(2);
+			step = Math.min(length - done, buffer.remaining() / 2);
+			buffer.asShortBuffer().get(values, done, step);
+			buffer.position(buffer.position() + step * 2);
+		}
+		return values;
+	}
+
+	public int[] readInts(int length) throws IOException {
+		int[] values = new int[length];
+		for (int done = 0, step; done < length; done += step) {
+			require(4);
+			step = Math.min(length - done, buffer.remaining() / 4);
+			buffer.asIntBuffer().get(values, done, step);
+			buffer.position(buffer.position() + step * 4);
+		}
+		return values;
+	}
+
+	public long[] readLongs(int length) throws IOException {
+		long[] values = new long[length];
+		for (int done = 0, step; done < length; done += step) {
+			require(8);
+			step = Math.min(length - done, buffer.remaining() / 8);
+			buffer.asLongBuffer().get(values, done, step);
+			buffer.position(buffer.position() + step * 8);
+		}
+		return values;
+	}
+
+	public float[] readFloats(int length) throws IOException {
+		float[] values = new float[length];
+		for (int done = 0, step; done < length; done += step) {
+			require(4);
+			step = Math.min(length - done, buffer.remaining() / 4);
+			buffer.asFloatBuffer().get(values, done, step);
+			buffer.position(buffer.position() + step * 4);
+		}
+		return values;
+	}
+
+	public double[] readDoubles(int length) throws IOException {
+		double[] values = new double[length];
+		for (int done = 0, step; done < length; done += step) {
+			require(8);
+			step = Math.min(length - done, buffer.remaining() / 8);
+			buffer.asDoubleBuffer().get(values, done, step);
+			buffer.position(buffer.position() + step * 8);
+		}
+		return values;
+	}
+
+	/**
+	 * Reads a UTF-8 text, which is prefixed by its byte length as LEB128 number
+	 */
+	public String readString() throws IOException {
+		return readString(readVarInt());
+	}
+
+	/**
+	 * Reads a UTF-8 text, after its byte length was read
+	 */
+	public String readString(int length) throws IOException {
+		if (length <= buffer.capacity() && buffer.hasArray()) {
+			require(length);
+			String text = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+					StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+			return text;
+		}
+		return new String(readBytes(length), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Moves to the position, only possible if the whole data is in the buffer
+	 */
+	public void seek(long position) {
+		if (channel != null)
+			throw new UnsupportedOperationException("seek is only possible on a buffer");
+		buffer.position((int) position);
+	}
+
+	public void skip(long bytes) throws IOException {
+		while (bytes > 0) {
+			if (!buffer.hasRemaining() && !fill())
+				throw new EOFException("Unexpected end of file");
+			int step = (int) Math.min(bytes, buffer.remaining());
+			buffer.position(buffer.position() + step);
+			bytes -= step;
+		}
+	}
+
+	/**
+	 * Switches to text input. All following data is decoded with the charset and
+	 * has to be read by {@link #readTextChar()} and {@link #readText(int)}
+	 */
+	public void setCharset(Charset charset) {
+		decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		chars = CharBuffer.allocate(BUFFER_SIZE);
+		chars.flip();
+	}
+
+	public boolean isText() {
+		return decoder != null;
+	}
+
+	/**
+	 * Decodes the next window of characters
+	 *
+	 * @return <b>false</b> if there are no more characters
+	 */
+	private boolean fillChars() throws IOException {
+		chars.compact();
+		while (chars.position() == 0) {
+			decoder.decode(buffer, chars, eof);
+			if (chars.position() == 0 && !fill()) {
+				decoder.decode(buffer, chars, true);
+				decoder.flush(chars);
+				break;
+			}
+		}
+		chars.flip();
+		return chars.hasRemaining();
+	}
+
+	/**
+	 * @return the next character or -1 at the end of the file
+	 */
+	public int readTextChar() throws IOException {
+		if (!chars.hasRemaining() && !fillChars())
+			return -1;
+		return chars.get();
+	}
+
+	/**
+	 * Reads up to length characters, less if the end of the file is reached
+	 */
+	public String readText(int length) throws IOException {
+		char[] text = new char[length];
+		int done = 0;
+		while (done < length) {
+			if (!chars.hasRemaining() && !fillChars())
+				break;
+			int step = Math.min(length - done, chars.remaining());
+			chars.get(text, done, step);
+			done += step;
+		}
+		return new String(text, 0, done);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel != null)
+			channel.close();
+	}
+}
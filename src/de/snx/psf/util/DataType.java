@@ -1,7 +1,7 @@
 package de.snx.psf.util;
 
 public enum DataType {
-	STRING(0), CHARACTER(1), BYTE(2), SHORT(3), INTEGER(4), LONG(5), FLOAT(6), DOUBLE(7), BOOLEAN(8);
+	STRING(0), CHARACTER(1), BYTE(2), SHORT(3), INTEGER(4), LONG(5), FLOAT(6), DOUBLE(7), BOOLEAN(8), BINARY(9);
 
 	public final int ID;
 
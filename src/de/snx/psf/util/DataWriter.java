@@ -0,0 +1,378 @@
+package de.snx.psf.util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered binary output for the V4 format.<br>
+ * The positions are absolute positions in the channel, so a length that is
+ * only known after its content was written can be patched in afterwards.<br>
+ * Without a channel the data is collected in the memory, the buffer grows as
+ * needed.
+ *
+ * @author Sunnix
+ *
+ */
+public class DataWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	/**
+	 * channel position of the first byte in the buffer
+	 */
+	private long bufferStart;
+
+	/**
+	 * a copy from another channel, which is not done yet, so a following copy of
+	 * the next bytes can be joined with it. The buffer is empty while a copy is
+	 * pending
+	 */
+	private FileChannel copySource;
+	private long copyPosition, copyLength;
+
+	public DataWriter(FileChannel channel) throws IOException {
+		this.channel = channel;
+		buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		bufferStart = channel.position();
+	}
+
+	/**
+	 * Writes into the memory
+	 */
+	public DataWriter() {
+		buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	}
+
+	/**
+	 * Discards the old content of the channel and starts writing at position 0
+	 */
+	public void reset() throws IOException {
+		buffer.clear();
+		copyLength = 0;
+		if (channel == null)
+			return;
+		channel.truncate(0);
+		channel.position(0);
+		bufferStart = 0;
+	}
+
+	public long position() {
+		return bufferStart + copyLength + buffer.position();
+	}
+
+	private void ensure(int bytes) throws IOException {
+		if (copyLength > 0)
+			transferPending();
+		if (buffer.remaining() >= bytes)
+			return;
+		if (channel != null) {
+			flush();
+			return;
+		}
+		ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+		buffer.flip();
+		grown.put(buffer);
+		buffer = grown;
+	}
+
+	public void writeByte(int b) throws IOException {
+		ensure(1);
+		buffer.put((byte) b);
+	}
+
+	public void writeShort(int s) throws IOException {
+		ensure(2);
+		buffer.putShort((short) s);
+	}
+
+	public void writeChar(char c) throws IOException {
+		ensure(2);
+		buffer.putChar(c);
+	}
+
+	public void writeInt(int i) throws IOException {
+		ensure(4);
+		buffer.putInt(i);
+	}
+
+	public void writeLong(long l) throws IOException {
+		ensure(8);
+		buffer.putLong(l);
+	}
+
+	/**
+	 * Writes the value as an unsigned LEB128 number: 7 bits per byte, the
+	 * highest bit is set, if another byte follows. Values below 128 take one
+	 * byte, negative values five bytes
+	 */
+	public void writeVarInt(int i) throws IOException {
+		ensure(5);
+		putVarInt(buffer, i);
+	}
+
+	/**
+	 * Puts the value as unsigned LEB128 number at the position of the buffer
+	 */
+	public static void putVarInt(ByteBuffer buffer, int i) {
+		while ((i & ~0x7F) != 0) {
+			buffer.put((byte) (i | 0x80));
+			i >>>= 7;
+		}
+		buffer.put((byte) i);
+	}
+
+	/**
+	 * @return the count of bytes of the value as unsigned LEB128 number
+	 */
+	public static int varIntSize(int i) {
+		int size = 1;
+		while ((i & ~0x7F) != 0) {
+			i >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * Writes the value as an unsigned LEB128 number of up to ten bytes
+	 */
+	public void writeVarLong(long l) throws IOException {
+		ensure(10);
+		while ((l & ~0x7FL) != 0) {
+			buffer.put((byte) (l | 0x80));
+			l >>>= 7;
+		}
+		buffer.put((byte) l);
+	}
+
+	/**
+	 * Writes the value ZigZag encoded as LEB128 number, so small negative values
+	 * are short as well: 0, -1, 1, -2 are written as 0, 1, 2, 3
+	 */
+	public void writeSignedVarInt(int i) throws IOException {
+		writeVarInt((i << 1) ^ (i >> 31));
+	}
+
+	/**
+	 * Writes the value ZigZag encoded as LEB128 number
+	 */
+	public void writeSignedVarLong(long l) throws IOException {
+		writeVarLong((l << 1) ^ (l >> 63));
+	}
+
+	public void writeFloat(float f) throws IOException {
+		ensure(4);
+		buffer.putFloat(f);
+	}
+
+	public void writeDouble(double d) throws IOException {
+		ensure(8);
+		buffer.putDouble(d);
+	}
+
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		if (copyLength > 0)
+			transferPending();
+		if (channel == null)
+			ensure(length);
+		if (length > buffer.remaining()) {
+			flush();
+			if (length > buffer.capacity()) {
+				ByteBuffer direct = ByteBuffer.wrap(bytes, offset, length);
+				while (direct.hasRemaining())
+					bufferStart += channel.write(direct);
+				return;
+			}
+		}
+		buffer.put(bytes, offset, length);
+	}
+
+	/**
+	 * Writes the remaining bytes of the data. Data, which doesn't fit into the
+	 * buffer, is written together with the buffer in one gathering write
+	 */
+	public void write(ByteBuffer data) throws IOException {
+		if (copyLength > 0)
+			transferPending();
+		if (channel == null || data.remaining() <= buffer.remaining()) {
+			ensure(data.remaining());
+			buffer.put(data);
+			return;
+		}
+		buffer.flip();
+		ByteBuffer[] buffers = { buffer, data };
+		while (data.hasRemaining())
+			bufferStart += channel.write(buffers);
+		buffer.clear();
+	}
+
+	/**
+	 * Copies bytes of another channel, without reading them into the memory. A
+	 * copy of the bytes right after the last copy is joined with it. Without a
+	 * channel the bytes are read into the memory
+	 */
+	public void transfer(FileChannel source, long position, long length) throws IOException {
+		if (length == 0)
+			return;
+		if (channel == null) {
+			ensure((int) length);
+			ByteBuffer target = buffer.duplicate();
+			target.limit(target.position() + (int) length);
+			while (target.hasRemaining())
+				if (source.read(target, position + target.position() - buffer.position()) < 0)
+					throw new EOFException("Unexpected end of the source");
+			buffer.position(target.position());
+			return;
+		}
+		if (copyLength > 0 && copySource == source && copyPosition + copyLength == position) {
+			copyLength += length;
+			return;
+		}
+		flush();
+		copySource = source;
+		copyPosition = position;
+		copyLength = length;
+	}
+
+	private void transferPending() throws IOException {
+		while (copyLength > 0) {
+			long count = copySource.transferTo(copyPosition, copyLength, channel);
+			if (count <= 0 && copyPosition >= copySource.size())
+				throw new EOFException("Unexpected end of the source");
+			copyPosition += count;
+			copyLength -= count;
+			bufferStart += count;
+		}
+		copySource = null;
+	}
+
+	/*
+	 * The arrays are copied through views of the buffer, as many elements at once
+	 * as fit into the buffer
+	 */
+
+	public void writeChars(char[] values) throws IOException {
+		for (int done = 0, step; done < values.length; done += step) {
+			ensure(2);
+			step = Math.min(values.length - done, buffer.remaining() / 2);
+			buffer.asCharBuffer().put(values, done, step);
+			buffer.position(buffer.position() + step * 2);
+		}
+	}
+
+	public void writeShorts(short[] values) throws IOException {
+		for (int done = 0, step; done < values.length; done += step) {
+			ensure(2);
+			step = Math.min(values.length - done, buffer.remaining() / 2);
+			buffer.asShortBuffer().put(values, done, step);
+			buffer.position(buffer.position() + step * 2);
+		}
+	}
+
+	public void writeInts(int[] values) throws IOException {
+		for (int done = 0, step; done < values.length; done += step) {
+			ensure(4);
+			step = Math.min(values.length - done, buffer.remaining() / 4);
+			buffer.asIntBuffer().put(values, done, step);
+			buffer.position(buffer.position() + step * 4);
+		}
+	}
+
+	public void writeLongs(long[] values) throws IOException {
+		for (int done = 0, step; done < values.length; done += step) {
+			ensure(8);
+			step = Math.min(values.length - done, buffer.remaining() / 8);
+			buffer.asLongBuffer().put(values, done, step);
+			buffer.position(buffer.position() + step * 8);
+		}
+	}
+
+	public void writeFloats(float[] values) throws IOException {
+		for (int done = 0, step; done < values.length; done += step) {
+			ensure(4);
+			step = Math.min(values.length - done, buffer.remaining() / 4);
+			buffer.asFloatBuffer().put(values, done, step);
+			buffer.position(buffer.position() + step * 4);
+		}
+	}
+
+	public void writeDoubles(double[] values) throws IOException {
+		for (int done = 0, step; done < values.length; done += step) {
+			ensure(8);
+			step = Math.min(values.length - done, buffer.remaining() / 8);
+			buffer.asDoubleBuffer().put(values, done, step);
+			buffer.position(buffer.position() + step * 8);
+		}
+	}
+
+	/**
+	 * Writes the byte length of the UTF-8 text as LEB128 number followed by the
+	 * text
+	 */
+	public void writeString(String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(bytes.length);
+		write(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Overrides 8 already written bytes at the position with the value
+	 *
+	 * @param position absolute position returned by {@link #position()}
+	 */
+	public void patchLong(long position, long value) throws IOException {
+		if (position >= bufferStart) {
+			buffer.putLong((int) (position - bufferStart), value);
+			return;
+		}
+		ByteBuffer patch = ByteBuffer.allocate(8);
+		patch.putLong(value);
+		patch.flip();
+		while (patch.hasRemaining())
+			position += channel.write(patch, position);
+	}
+
+	/**
+	 * @return the data written into the memory, without copying it
+	 */
+	public ByteBuffer getData() {
+		if (channel != null)
+			throw new UnsupportedOperationException("the data is written into a channel");
+		ByteBuffer data = buffer.duplicate();
+		data.flip();
+		return data;
+	}
+
+	public void flush() throws IOException {
+		if (channel == null)
+			return;
+		if (copyLength > 0)
+			transferPending();
+		buffer.flip();
+		while (buffer.hasRemaining())
+			bufferStart += channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Flushes the buffer and forces the content of the channel onto the storage
+	 */
+	public void force() throws IOException {
+		flush();
+		if (channel != null)
+			channel.force(false);
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+		if (channel != null)
+			channel.close();
+	}
+}
@@ -0,0 +1,137 @@
+package de.snx.psf.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The dictionary of the keys and room names of a file of the version 4.<br>
+ * The dictionary is written behind the header, if the flag
+ * {@link DataBuilder#FLAG_KEYS} is set. A key, which is in the dictionary, is
+ * written as the negative number -(id + 1) in place of the length of the text,
+ * all other keys are written as text. The number is ZigZag encoded, so an id
+ * below 64 takes one byte. So the entries of an older file can be
+ * copied into a new file, as long as the new dictionary starts with the old
+ * one.<br>
+ * Before a file is written, the keys are counted by {@link #count(String)} and
+ * only the keys used more than once are added by {@link #addCounted()}.<br>
+ * When a file is read, every key is read as the same String instance, the keys
+ * of the dictionary and the keys written as text.
+ *
+ * @author Sunnix
+ *
+ */
+public class KeyTable {
+
+	private final ArrayList<String> keys;
+	/**
+	 * the ids of the keys, only used for writing
+	 */
+	private final HashMap<String, Integer> ids;
+	/**
+	 * the keys, which are counted for the next {@link #addCounted()}
+	 */
+	private LinkedHashMap<String, Integer> counted;
+	/**
+	 * the instances of the keys, which are read, only used for reading
+	 */
+	private ConcurrentHashMap<String, String> interned;
+
+	public KeyTable() {
+		keys = new ArrayList<>();
+		ids = new HashMap<>();
+	}
+
+	/**
+	 * @param base the dictionary of the file, whose entries are copied, the new
+	 *             dictionary starts with its keys
+	 */
+	public KeyTable(KeyTable base) {
+		keys = new ArrayList<>(base.keys);
+		ids = new HashMap<>(keys.size() * 4 / 3 + 1);
+		for (int i = 0; i < keys.size(); i++)
+			ids.putIfAbsent(keys.get(i), i);
+	}
+
+	private KeyTable(ArrayList<String> keys) {
+		this.keys = keys;
+		ids = null;
+		interned = new ConcurrentHashMap<>(keys.size() * 4 / 3 + 16);
+		for (String key : keys)
+			interned.putIfAbsent(key, key);
+	}
+
+	public int size() {
+		return keys.size();
+	}
+
+	/**
+	 * Counts a key, which will be written
+	 */
+	public void count(String key) {
+		if (ids.containsKey(key))
+			return;
+		if (counted == null)
+			counted = new LinkedHashMap<>();
+		counted.merge(key, 1, Integer::sum);
+	}
+
+	/**
+	 * Adds the counted keys, which are used more than once, in the order they
+	 * were counted first
+	 */
+	public void addCounted() {
+		if (counted == null)
+			return;
+		for (Map.Entry<String, Integer> entry : counted.entrySet())
+			if (entry.getValue() > 1) {
+				ids.put(entry.getKey(), keys.size());
+				keys.add(entry.getKey());
+			}
+		counted = null;
+	}
+
+	/**
+	 * @return the id of the key or -1 if it is not in the dictionary
+	 */
+	public int find(String key) {
+		Integer id = ids.get(key);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @return the key with the id
+	 * @throws IOException if there is no key with the id
+	 */
+	public String get(int id) throws IOException {
+		if (id < 0 || id >= keys.size())
+			throw new IOException("Unknown key " + id);
+		return keys.get(id);
+	}
+
+	/**
+	 * @return the instance of the key, which is used for all equal keys read
+	 *         from the file
+	 */
+	public String intern(String key) {
+		String known = interned.putIfAbsent(key, key);
+		return known == null ? key : known;
+	}
+
+	void write(DataWriter out) throws IOException {
+		out.writeVarInt(keys.size());
+		for (String key : keys)
+			out.writeString(key);
+	}
+
+	static KeyTable read(DataReader in) throws IOException {
+		int size = in.readVarInt();
+		ArrayList<String> keys = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+			keys.add(in.readString());
+		return new KeyTable(keys);
+	}
+}
@@ -0,0 +1,214 @@
+package de.snx.psf.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import de.snx.psf.PSFFileIO;
+import de.snx.psf.PSFMetrics;
+
+/**
+ * ArrayList with a hash index of the keys of its elements.<br>
+ * The list keeps the order of the elements, the index only stores the position
+ * of the first element with a key. Elements added with {@link #add(Object)}
+ * are indexed directly, after any other change of the list the index is
+ * rebuilt on the next lookup.<br>
+ * The optional change listener is called after every change of the list, the
+ * optional removal listener whenever elements are removed or replaced. Elements
+ * added by {@link #addLoaded(Object)} are not reported, they are the content
+ * of the file.<br>
+ * Lookups may run on several threads at once, as long as the list is not
+ * changed at the same time. A stale index is then rebuilt into a new map, so
+ * other lookups never see a half built index.
+ *
+ * @author Sunnix
+ *
+ */
+class KeyedList<E> extends ArrayList<E> {
+
+	private static final long serialVersionUID = 4730418237744927032L;
+
+	private final Function<E, String> keyOf;
+	private volatile HashMap<String, Integer> index = new HashMap<>();
+	/**
+	 * modCount of the list, when the index was up to date
+	 */
+	private volatile int indexedModCount = -1;
+	private final Runnable onChange;
+	private final Runnable onRemove;
+
+	KeyedList(Function<E, String> keyOf, Runnable onChange) {
+		this(keyOf, onChange, null);
+	}
+
+	KeyedList(Function<E, String> keyOf, Runnable onChange, Runnable onRemove) {
+		this.keyOf = keyOf;
+		this.onChange = onChange;
+		this.onRemove = onRemove;
+	}
+
+	/**
+	 * @return the first element with this key or null if there is none
+	 */
+	E find(String key) {
+		int position = indexOfKey(key);
+		return position < 0 ? null : get(position);
+	}
+
+	/**
+	 * @return the position of the first element with this key or -1 if there is
+	 *         none
+	 */
+	int indexOfKey(String key) {
+		if (indexedModCount != modCount)
+			rebuildIndex();
+		Integer position = index.get(key);
+		return position == null ? -1 : position;
+	}
+
+	@Override
+	public boolean add(E e) {
+		addLoaded(e);
+		changed();
+		return true;
+	}
+
+	/**
+	 * Adds the element without calling the change listener
+	 */
+	void addLoaded(E e) {
+		boolean indexed = indexedModCount == modCount;
+		super.add(e);
+		if (indexed && e != null) {
+			index.putIfAbsent(keyOf.apply(e), size() - 1);
+			indexedModCount = modCount;
+		}
+	}
+
+	@Override
+	public void add(int position, E e) {
+		super.add(position, e);
+		changed();
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends E> c) {
+		boolean changed = super.addAll(c);
+		if (changed)
+			changed();
+		return changed;
+	}
+
+	@Override
+	public boolean addAll(int position, Collection<? extends E> c) {
+		boolean changed = super.addAll(position, c);
+		if (changed)
+			changed();
+		return changed;
+	}
+
+	@Override
+	public E set(int position, E e) {
+		E old = super.set(position, e);
+		if (old == null || e == null || !keyOf.apply(old).equals(keyOf.apply(e)))
+			modCount++; // the key changed, so the index has to be rebuilt
+		if (old != e)
+			removed();
+		return old;
+	}
+
+	@Override
+	public void sort(Comparator<? super E> c) {
+		super.sort(c);
+		changed();
+	}
+
+	@Override
+	public E remove(int index) {
+		E old = super.remove(index);
+		removed();
+		return old;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		boolean changed = super.remove(o);
+		if (changed)
+			removed();
+		return changed;
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		removed();
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		boolean changed = super.removeAll(c);
+		if (changed)
+			removed();
+		return changed;
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		boolean changed = super.retainAll(c);
+		if (changed)
+			removed();
+		return changed;
+	}
+
+	@Override
+	public boolean removeIf(Predicate<? super E> filter) {
+		boolean changed = super.removeIf(filter);
+		if (changed)
+			removed();
+		return changed;
+	}
+
+	@Override
+	protected void removeRange(int fromIndex, int toIndex) {
+		super.removeRange(fromIndex, toIndex);
+		removed();
+	}
+
+	@Override
+	public void replaceAll(UnaryOperator<E> operator) {
+		super.replaceAll(operator);
+		modCount++;
+		removed();
+	}
+
+	private void changed() {
+		if (onChange != null)
+			onChange.run();
+	}
+
+	private void removed() {
+		if (onRemove != null)
+			onRemove.run();
+		changed();
+	}
+
+	private synchronized void rebuildIndex() {
+		if (indexedModCount == modCount)
+			return; // rebuilt by another thread
+		HashMap<String, Integer> index = new HashMap<>(size() * 4 / 3 + 1);
+		for (int i = 0; i < size(); i++) {
+			E e = get(i);
+			if (e != null)
+				index.putIfAbsent(keyOf.apply(e), i);
+		}
+		this.index = index;
+		indexedModCount = modCount;
+		PSFMetrics metrics = PSFFileIO.metrics;
+		if (metrics != null)
+			metrics.linearScan(size());
+	}
+}
@@ -1,23 +1,148 @@
 package de.snx.psf.util;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import de.snx.psf.PSFFileIO;
+import de.snx.psf.PSFMetrics;
 
+/**
+ * A room of the file with its data objects and child rooms.<br>
+ * <br>
+ * The methods of a room can be used by several threads at once. Reads take the
+ * read lock of the room, changes take the write lock, so a change only blocks
+ * the rooms which share its lock. The locks are striped: every room uses one
+ * of a fixed set of locks, chosen by its identity.<br>
+ * The lists of {@link #getChilds()} and {@link #getDataObjects()} are not
+ * guarded, the read lock of {@link #getLock()} has to be held while iterating
+ * them, if other threads can change the room.
+ *
+ * @author Sunnix
+ *
+ */
 public class ObjectRoom {
 
+	private static final int LOCK_STRIPES = 64;
+	private static final ReentrantReadWriteLock[] LOCKS = new ReentrantReadWriteLock[LOCK_STRIPES];
+	static {
+		for (int i = 0; i < LOCK_STRIPES; i++)
+			LOCKS[i] = new ReentrantReadWriteLock();
+	}
+
+	/**
+	 * the count of bytes of the rooms, which are read or written by one thread,
+	 * if the builder is parallel
+	 */
+	private static final int PARALLEL_BATCH = 64 << 10;
+	/**
+	 * larger rooms are read and written by the thread of their parent, so their
+	 * child rooms are read and written in parallel instead
+	 */
+	private static final int PARALLEL_SPLIT = 1 << 20;
+	/**
+	 * rooms with more child rooms are written by the thread of their parent
+	 */
+	private static final int PARALLEL_SPLIT_ROOMS = 64;
+
+	private static final AtomicIntegerFieldUpdater<ObjectRoom> STRUCTURE_VERSION = AtomicIntegerFieldUpdater
+			.newUpdater(ObjectRoom.class, "structureVersion");
+	private static final AtomicLongFieldUpdater<ObjectRoom> LAST_CHANGE = AtomicLongFieldUpdater
+			.newUpdater(ObjectRoom.class, "lastChange");
+	private static final AtomicLongFieldUpdater<ObjectRoom> DATA_CHANGE = AtomicLongFieldUpdater
+			.newUpdater(ObjectRoom.class, "dataChange");
+	private static final AtomicLongFieldUpdater<ObjectRoom> EPOCH = AtomicLongFieldUpdater.newUpdater(ObjectRoom.class,
+			"epoch");
+
 	private String name;
 
 	private ObjectRoom parent;
-	private ArrayList<ObjectRoom> childs;
-	private ArrayList<DataObject> dataObjects;
+	private KeyedList<ObjectRoom> childs;
+	private KeyedList<DataObject> dataObjects;
+
+	/**
+	 * the input of a room, whose content is not read yet
+	 */
+	private volatile DataBuilder source;
+	private long sourcePosition;
+	/**
+	 * length of the entry of a compressed room, which is not read yet, or -1
+	 */
+	private long sourceLength = -1;
+	/**
+	 * child rooms of a room, which is not read yet, which were found through the
+	 * index. They are taken over, when the room is read
+	 */
+	private HashMap<String, ObjectRoom> indexedChilds;
+
+	/**
+	 * changes whenever a room is removed from the tree, only used in the topRoom
+	 */
+	private volatile int structureVersion;
+
+	/**
+	 * the epoch of the last change in this room or one of its child rooms
+	 */
+	private volatile long lastChange;
+	/**
+	 * the epoch of the last change of the data objects of this room
+	 */
+	private volatile long dataChange;
+
+	/*
+	 * Where the content of the room is in the file it was read from or written
+	 * into the last time. The start is relative to the start of the content of
+	 * the parent, only for the room, which was read or written, it is absolute.
+	 * The header is the tag, name and length before the content.
+	 */
+	private long encodedStart = -1, encodedLength, encodedDataLength = -1;
+	private int encodedHeader;
+	/**
+	 * the room is compressed in the file, so only the whole entry can be copied.
+	 * The header is then 0 and the length is the length of the entry
+	 */
+	private boolean encodedCompressed;
+	/**
+	 * the epoch of the content in the file, unchanged rooms can be copied from it
+	 */
+	private long encodedEpoch = -1;
+	/**
+	 * changes whenever the content of the room is encoded again. The position of
+	 * a child room is only valid, if it was set for the current content of the
+	 * parent
+	 */
+	private int encodedVersion, encodedParentVersion = -1;
+	/**
+	 * the current epoch of changes, only used in the topRoom
+	 */
+	private volatile long epoch = 1;
+	/**
+	 * receives the changes of the tree, only used in the topRoom
+	 */
+	private volatile ChangeLog changeLog;
+	/**
+	 * the index of the file and the builder of the file, only used in the topRoom
+	 */
+	private volatile RoomIndex index;
+	private DataBuilder indexSource;
+
+	private final ReentrantReadWriteLock lock;
 
 	public ObjectRoom(String name, ObjectRoom parent) {
 		this.name = name;
 		this.parent = parent == null ? this : parent; // make topRoom's parent itself
-		childs = new ArrayList<>();
-		dataObjects = new ArrayList<>();
+		childs = new KeyedList<>(ObjectRoom::getName, this::changed, this::roomRemoved);
+		dataObjects = new KeyedList<>(DataObject::getKey, this::dataObjectsChanged);
+		lock = LOCKS[System.identityHashCode(this) & (LOCK_STRIPES - 1)];
 	}
 
 	public String getName() {
@@ -28,69 +153,918 @@ public class ObjectRoom {
 		return parent;
 	}
 
+	public ObjectRoom getTopRoom() {
+		ObjectRoom room = this;
+		while (room.parent != room)
+			room = room.parent;
+		return room;
+	}
+
+	/**
+	 * The version changes whenever a room is removed or replaced anywhere in the
+	 * tree of this room, so a reference to a room can be checked to be still
+	 * part of the tree
+	 */
+	public int getStructureVersion() {
+		return getTopRoom().structureVersion;
+	}
+
+	private void roomRemoved() {
+		STRUCTURE_VERSION.incrementAndGet(getTopRoom());
+	}
+
+	/**
+	 * Marks this room and its parents as changed in the current epoch. Called by
+	 * all changes of the room and by {@link DataObject#setData(String)}
+	 */
+	public void changed() {
+		ObjectRoom top = getTopRoom();
+		long stamp = top.epoch;
+		for (ObjectRoom room = this;; room = room.parent) {
+			long last = room.lastChange;
+			while (last < stamp && !LAST_CHANGE.compareAndSet(room, last, stamp))
+				last = room.lastChange;
+			if (room == top)
+				return;
+		}
+	}
+
+	/**
+	 * Marks the data objects of this room as changed, so they are encoded again
+	 * on the next write
+	 */
+	private void dataObjectsChanged() {
+		long stamp = getTopRoom().epoch;
+		long last = dataChange;
+		while (last < stamp && !DATA_CHANGE.compareAndSet(this, last, stamp))
+			last = dataChange;
+		changed();
+	}
+
+	/**
+	 * @return the epoch of the last change in this room or one of its child rooms,
+	 *         0 if it is unchanged since it was read
+	 */
+	public long getLastChange() {
+		return lastChange;
+	}
+
+	/**
+	 * Starts a new epoch of changes in the tree of this room. All changes which
+	 * were finished before have an epoch of at most the returned epoch, so a
+	 * room whose {@link #getLastChange()} is not greater than the epoch of a copy
+	 * is still equal to the copy
+	 *
+	 * @return the epoch, which is ended
+	 */
+	public long newEpoch() {
+		return EPOCH.getAndIncrement(getTopRoom());
+	}
+
+	/**
+	 * Sets the ChangeLog, which receives all changes in the tree of this room
+	 *
+	 * @param changeLog the ChangeLog or null to remove it
+	 */
+	public void setChangeLog(ChangeLog changeLog) {
+		getTopRoom().changeLog = changeLog;
+	}
+
+	private ChangeLog getChangeLog() {
+		return getTopRoom().changeLog;
+	}
+
+	/**
+	 * Called by a DataObject of this room, when its data was changed
+	 */
+	void dataChanged(DataObject dataObject) {
+		dataObjectsChanged();
+		ChangeLog log = getChangeLog();
+		if (log != null)
+			log.dataWritten(this, dataObject);
+	}
+
+	/**
+	 * @return the lock of this room, which may be shared with other rooms
+	 */
+	public ReadWriteLock getLock() {
+		return lock;
+	}
+
 	public ArrayList<ObjectRoom> getChilds() {
+		load();
 		return childs;
 	}
 
 	public ArrayList<DataObject> getDataObjects() {
+		load();
 		return dataObjects;
 	}
 
-	public DataObject getDataObject(String key) {
-		for (DataObject dataObject : dataObjects) {
-			if (dataObject.getKey().equals(key))
-				return dataObject;
+	/**
+	 * @return the child room with this name or null if there is none
+	 */
+	public ObjectRoom getChild(String name) {
+		if (source != null) {
+			ObjectRoom child = findIndexed(name);
+			if (child != null)
+				return child;
+		}
+		load();
+		Lock read = lock.readLock();
+		read.lock();
+		try {
+			return childs.find(name);
+		} finally {
+			read.unlock();
 		}
-		if (PSFFileIO.showSoftErrors)
+	}
+
+	/**
+	 * @return the child room with this name, which is created if there is none
+	 */
+	public ObjectRoom getOrCreateChild(String name) {
+		ObjectRoom child = getChild(name);
+		if (child != null)
+			return child;
+		Lock write = lock.writeLock();
+		write.lock();
+		try {
+			child = childs.find(name); // may be created by another thread meanwhile
+			if (child == null) {
+				child = new ObjectRoom(name, this);
+				childs.add(child);
+				ChangeLog log = getChangeLog();
+				if (log != null)
+					log.roomCreated(child);
+			}
+			return child;
+		} finally {
+			write.unlock();
+		}
+	}
+
+	/**
+	 * Removes the child room with this name
+	 *
+	 * @return <b>true</b> if there was a room with this name
+	 */
+	public boolean removeChild(String name) {
+		load();
+		Lock write = lock.writeLock();
+		write.lock();
+		try {
+			int position = childs.indexOfKey(name);
+			if (position < 0)
+				return false;
+			ObjectRoom child = childs.remove(position);
+			ChangeLog log = getChangeLog();
+			if (log != null)
+				log.roomRemoved(child);
+			return true;
+		} finally {
+			write.unlock();
+		}
+	}
+
+	public DataObject getDataObject(String key) {
+		DataObject dataObject = findDataObject(key);
+		PSFMetrics metrics = PSFFileIO.metrics;
+		if (metrics != null)
+			metrics.lookup(dataObject != null);
+		if (dataObject == null && PSFFileIO.showSoftErrors) {
+			if (metrics != null)
+				metrics.softError();
 			new NullPointerException("There is no DataObject with the key \"" + getPath() + key + "\"")
 					.printStackTrace();
-		return null;
+		}
+		return dataObject;
+	}
+
+	/**
+	 * Same as {@link #getDataObject(String)}, but without a soft error if the
+	 * DataObject is missing
+	 */
+	public DataObject findDataObject(String key) {
+		load();
+		Lock read = lock.readLock();
+		read.lock();
+		try {
+			return dataObjects.find(key);
+		} finally {
+			read.unlock();
+		}
 	}
 
+	/**
+	 * Writes the value. An existing DataObject with the key is replaced by a new
+	 * one and not changed, so other threads never see a half written value
+	 */
 	public void write(String key, DataType type, String data) {
-		for (DataObject dataObject : dataObjects) {
-			if (dataObject.getKey() == key) {
-				dataObject.setType(type);
-				dataObject.setData(data);
-				// Info for overriding
-				System.err.println("overritten \"" + getPath() + key + "\"");
+		write(new DataObject(key, type, data));
+	}
+
+	/**
+	 * Writes the new DataObject like {@link #write(String, DataType, String)},
+	 * e.g. with a primitive value
+	 */
+	public void write(DataObject dataObject) {
+		load();
+		Lock write = lock.writeLock();
+		write.lock();
+		try {
+			int position = dataObjects.indexOfKey(dataObject.getKey());
+			if (position >= 0) {
+				dataObject.setOwner(this);
+				dataObjects.set(position, dataObject);
+				logData(dataObject);
 				return;
 			}
+			dataObject.setOwner(this);
+			dataObjects.add(dataObject);
+			logData(dataObject);
+		} finally {
+			write.unlock();
 		}
-		dataObjects.add(new DataObject(key, type, data));
+	}
+
+	/**
+	 * Adds the DataObject or replaces the DataObject with the same key
+	 */
+	public void addDataObject(DataObject object) {
+		load();
+		Lock write = lock.writeLock();
+		write.lock();
+		try {
+			object.setOwner(this);
+			int position = dataObjects.indexOfKey(object.getKey());
+			if (position >= 0)
+				dataObjects.set(position, object);
+			else
+				dataObjects.add(object);
+			logData(object);
+		} finally {
+			write.unlock();
+		}
+	}
+
+	private void logData(DataObject dataObject) {
+		ChangeLog log = getChangeLog();
+		if (log != null)
+			log.dataWritten(this, dataObject);
+	}
+
+	private void loadDataObject(DataObject dataObject) {
+		dataObject.setOwner(this);
+		dataObjects.addLoaded(dataObject);
 	}
 
 	public void readData(DataBuilder builder) throws NumberFormatException, IOException {
+		if (builder.isBinary()) {
+			readBinaryData(builder);
+			return;
+		}
 		int dataObjectsSize = Integer.parseInt(builder.getDataText());
 		for (int i = 0; i < dataObjectsSize; i++) {
-			dataObjects.add(builder.getDataObject());
+			loadDataObject(builder.getDataObject());
 		}
+		PSFMetrics metrics = parent == this ? PSFFileIO.metrics : null;
 		int objectRoomSize = Integer.parseInt(builder.getDataText());
 		for (int i = 0; i < objectRoomSize; i++) {
+			long roomStart = metrics == null ? 0 : System.nanoTime();
 			String roomName = builder.getDataText();
 			ObjectRoom newRoom = new ObjectRoom(roomName.substring(1, roomName.length() - 3), this);
 			newRoom.readData(builder);
-			childs.add(newRoom);
+			if (metrics != null)
+				metrics.roomParsed(newRoom.name, System.nanoTime() - roomStart);
+			childs.addLoaded(newRoom);
 			builder.getDataText(); // clear the closing } symbol
 		}
 	}
 
+	/**
+	 * The content of the room is read from the builder, when the room is used
+	 * the first time. Child rooms are only skipped and also read when they are
+	 * used. The input of the builder has to contain the whole file.
+	 *
+	 * @param position position of the content of the room in the builder
+	 */
+	public void readLazy(DataBuilder builder, long position) {
+		source = builder;
+		sourcePosition = position;
+	}
+
+	/**
+	 * Uses the index to find the child rooms of rooms, which are not read yet,
+	 * only used in the topRoom
+	 *
+	 * @param builder the builder, which was given to
+	 *                {@link #readLazy(DataBuilder, long)}
+	 */
+	public void setIndex(RoomIndex index, DataBuilder builder) {
+		indexSource = builder;
+		this.index = index;
+	}
+
+	/**
+	 * Finds a child room of a room, which is not read yet, through the index of
+	 * the file, without reading the other entries of the room
+	 *
+	 * @return the child room or null if it is not in the index
+	 */
+	private ObjectRoom findIndexed(String name) {
+		ObjectRoom top = getTopRoom();
+		RoomIndex index = top.index;
+		if (index == null || sourceLength >= 0)
+			return null;
+		Lock write = lock.writeLock();
+		write.lock();
+		try {
+			DataBuilder origin = source;
+			if (origin != top.indexSource)
+				return null; // already read or not read from the file
+			ObjectRoom child = indexedChilds == null ? null : indexedChilds.get(name);
+			if (child != null)
+				return child;
+			long entry = index.find(getPath() + name + "/");
+			if (entry < 0)
+				return null;
+			DataBuilder builder = origin.fork();
+			builder.seek(entry);
+			int tag = builder.getTag();
+			if (tag != DataBuilder.TAG_ROOM && tag != DataBuilder.TAG_COMPRESSED_ROOM
+					|| !builder.getKey().equals(name))
+				return null; // another path with the same hash
+			child = lazyChild(name, tag, builder.getRoomLength(), entry, builder.position(), origin, sourcePosition);
+			if (indexedChilds == null)
+				indexedChilds = new HashMap<>();
+			indexedChilds.put(name, child);
+			return child;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read the room \"" + getPath() + name + "\"", e);
+		} finally {
+			write.unlock();
+		}
+	}
+
+	/**
+	 * Creates a child room, whose content is read when it is used the first time
+	 *
+	 * @param position the position after the length of the room
+	 * @param start    the position of the content of this room
+	 */
+	private ObjectRoom lazyChild(String name, int tag, long length, long entry, long position, DataBuilder origin,
+			long start) {
+		ObjectRoom child = new ObjectRoom(name, this);
+		child.readLazy(origin, position);
+		child.encodedEpoch = 0;
+		if (tag == DataBuilder.TAG_COMPRESSED_ROOM) {
+			child.sourceLength = length;
+			child.compressedAt(entry, position + length, start);
+		} else {
+			child.encodedLength = length - 1;
+			child.located(entry, position, start);
+		}
+		return child;
+	}
+
+	/**
+	 * @return <b>true</b> if the content of the room is not read yet
+	 */
+	public boolean isLazy() {
+		return source != null;
+	}
+
+	/**
+	 * Reads the content of a lazy room. Every load reads with its own fork of the
+	 * builder, so different rooms can be loaded by different threads at once
+	 */
+	private void load() {
+		if (source == null)
+			return;
+		Lock write = lock.writeLock();
+		write.lock();
+		try {
+			DataBuilder origin = source;
+			if (origin == null)
+				return; // loaded by another thread
+			PSFMetrics metrics = PSFFileIO.metrics;
+			long loadStart = metrics == null ? 0 : System.nanoTime();
+			DataBuilder builder = origin.fork();
+			builder.seek(sourcePosition);
+			long start = sourcePosition;
+			long skipped = 0;
+			if (sourceLength >= 0) {
+				// the child rooms read the decompressed content
+				builder = builder.inflate(sourceLength);
+				origin = builder;
+				start = 0;
+			}
+			long dataEnd = -1;
+			while (true) {
+				long entry = builder.position();
+				int tag = builder.getTag();
+				if (tag == DataBuilder.TAG_END) {
+					loaded(start, dataEnd < 0 ? entry : dataEnd, entry);
+					if (metrics != null) {
+						metrics.bytesRead(sourceLength >= 0 ? sourceLength : entry + 1 - start - skipped);
+						if (parent != this && parent.parent == parent)
+							metrics.roomParsed(name, System.nanoTime() - loadStart);
+					}
+					break;
+				}
+				if (tag == DataBuilder.TAG_ROOM || tag == DataBuilder.TAG_COMPRESSED_ROOM) {
+					String childName = builder.getKey();
+					long length = builder.getRoomLength();
+					// a room found through the index is taken over
+					ObjectRoom newRoom = indexedChilds == null ? null : indexedChilds.remove(childName);
+					if (newRoom == null || start + newRoom.encodedStart - newRoom.encodedHeader != entry)
+						newRoom = lazyChild(childName, tag, length, entry, builder.position(), origin, start);
+					builder.skip(length);
+					skipped += length;
+					childs.addLoaded(newRoom);
+					if (dataEnd < 0)
+						dataEnd = entry;
+				} else {
+					loadDataObject(builder.getDataObject(tag));
+					if (dataEnd >= 0)
+						dataEnd = Long.MAX_VALUE; // the data is mixed with the rooms
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read the room \"" + getPath() + "\"", e);
+		} finally {
+			source = null;
+			indexedChilds = null;
+			write.unlock();
+		}
+	}
+
+	/**
+	 * reads the entries of the room until the room is closed. If the builder is
+	 * parallel, the small child rooms are read in batches by the
+	 * {@link ForkJoinPool}, while the entries after them are read on
+	 */
+	private void readBinaryData(DataBuilder builder) throws IOException {
+		long start = builder.position();
+		long dataEnd = -1;
+		// only the rooms in the topRoom are measured
+		PSFMetrics metrics = parent == this ? PSFFileIO.metrics : null;
+		RoomReader batch = null;
+		ArrayList<RoomReader> tasks = null;
+		while (true) {
+			long entry = builder.position();
+			int tag = builder.getTag();
+			if (tag == DataBuilder.TAG_END) {
+				if (batch != null)
+					tasks.add((RoomReader) batch.fork());
+				if (tasks != null)
+					for (RoomReader task : tasks)
+						task.finish();
+				loaded(start, dataEnd < 0 ? entry : dataEnd, entry);
+				return;
+			}
+			if (tag == DataBuilder.TAG_ROOM || tag == DataBuilder.TAG_COMPRESSED_ROOM) {
+				ObjectRoom newRoom = new ObjectRoom(builder.getKey(), this);
+				long length = builder.getRoomLength();
+				long contentStart = builder.position();
+				long compressedLength = -1;
+				if (tag == DataBuilder.TAG_COMPRESSED_ROOM) {
+					compressedLength = length;
+					newRoom.compressedAt(entry, contentStart + length, start);
+				} else
+					newRoom.located(entry, contentStart, start);
+				if (builder.isParallel() && length < PARALLEL_SPLIT) {
+					if (batch == null) {
+						batch = new RoomReader(metrics);
+						if (tasks == null)
+							tasks = new ArrayList<>();
+					}
+					batch.add(newRoom, builder.slice(length), length, compressedLength);
+					if (batch.bytes >= PARALLEL_BATCH) {
+						tasks.add((RoomReader) batch.fork());
+						batch = null;
+					}
+				} else
+					newRoom.readContent(builder, compressedLength, metrics);
+				childs.addLoaded(newRoom);
+				if (dataEnd < 0)
+					dataEnd = entry;
+			} else {
+				loadDataObject(builder.getDataObject(tag));
+				if (dataEnd >= 0)
+					dataEnd = Long.MAX_VALUE; // the data is mixed with the rooms
+			}
+		}
+	}
+
+	/**
+	 * Reads the content of the room, the position of the room has to be set
+	 * before
+	 *
+	 * @param compressedLength the length of the entry of a compressed room or -1
+	 * @param metrics          receives the time or null
+	 */
+	private void readContent(DataBuilder builder, long compressedLength, PSFMetrics metrics) throws IOException {
+		long begin = metrics == null ? 0 : System.nanoTime();
+		readData(compressedLength >= 0 ? builder.inflate(compressedLength) : builder);
+		if (metrics != null)
+			metrics.roomParsed(name, System.nanoTime() - begin);
+	}
+
+	/**
+	 * Reads several rooms on another thread, every room from its own part of the
+	 * input
+	 */
+	private static class RoomReader extends RecursiveAction {
+
+		private static final long serialVersionUID = -6025187473620874585L;
+
+		private final ArrayList<ObjectRoom> rooms = new ArrayList<>();
+		private final ArrayList<DataBuilder> contents = new ArrayList<>();
+		private final ArrayList<Long> compressedLengths = new ArrayList<>();
+		private final PSFMetrics metrics;
+		private long bytes;
+		private IOException error;
+
+		RoomReader(PSFMetrics metrics) {
+			this.metrics = metrics;
+		}
+
+		/**
+		 * @param length           the length of the content
+		 * @param compressedLength the length of the entry of a compressed room or -1
+		 */
+		void add(ObjectRoom room, DataBuilder content, long length, long compressedLength) {
+			rooms.add(room);
+			contents.add(content);
+			compressedLengths.add(compressedLength);
+			bytes += length;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				for (int i = 0; i < rooms.size(); i++)
+					rooms.get(i).readContent(contents.get(i), compressedLengths.get(i), metrics);
+			} catch (IOException e) {
+				error = e;
+			}
+		}
+
+		/**
+		 * Waits until the rooms are read
+		 */
+		void finish() throws IOException {
+			join();
+			if (error != null)
+				throw error;
+		}
+	}
+
+	/**
+	 * Keeps where the content of the room was read from
+	 *
+	 * @param dataEnd end of the data objects, {@link Long#MAX_VALUE} if they are
+	 *                mixed with the child rooms
+	 */
+	private void loaded(long start, long dataEnd, long end) {
+		if (parent == this)
+			encodedStart = start;
+		encodedDataLength = dataEnd == Long.MAX_VALUE ? -1 : dataEnd - start;
+		if (!encodedCompressed)
+			encodedLength = end - start;
+		encodedEpoch = 0;
+	}
+
+	/**
+	 * Keeps the position of the room in the content of its parent
+	 */
+	private void located(long entry, long contentStart, long parentStart) {
+		encodedParentVersion = parent.encodedVersion;
+		encodedCompressed = false;
+		encodedHeader = (int) (contentStart - entry);
+		encodedStart = contentStart - parentStart;
+	}
+
+	/**
+	 * Keeps the position of the compressed room in the content of its parent
+	 */
+	private void compressedAt(long entry, long end, long parentStart) {
+		encodedParentVersion = parent.encodedVersion;
+		encodedCompressed = true;
+		encodedHeader = 0;
+		encodedStart = entry - parentStart;
+		encodedLength = end - entry - 1;
+	}
+
+	/**
+	 * Counts the keys of the data objects and the names of the child rooms,
+	 * which will be encoded by the next write
+	 *
+	 * @param all <b>false</b> to skip the rooms, which are unchanged since they
+	 *            were read or written, because they are copied
+	 */
+	public void collectKeys(KeyTable keys, boolean all) {
+		if (!all && lastChange <= encodedEpoch)
+			return;
+		load();
+		ObjectRoom[] rooms;
+		Lock read = lock.readLock();
+		read.lock();
+		try {
+			if (all || dataChange > encodedEpoch)
+				for (int i = 0; i < dataObjects.size(); i++)
+					keys.count(dataObjects.get(i).getKey());
+			rooms = childs.toArray(new ObjectRoom[childs.size()]);
+		} finally {
+			read.unlock();
+		}
+		for (ObjectRoom child : rooms)
+			if (all || child.lastChange > child.encodedEpoch) {
+				keys.count(child.name);
+				child.collectKeys(keys, all);
+			}
+	}
+
+	/**
+	 * writes the entries of the room in the binary format, the room itself has
+	 * to be opened by the caller
+	 */
 	public void writeData(DataBuilder builder) throws IOException {
-		builder.buildDataText(Integer.toString(dataObjects.size()));
-		for (int i = 0; i < dataObjects.size(); i++) {
-			DataObject dO = dataObjects.get(i);
-			builder.buildDataSet(dO);
+		writeData(builder, newEpoch(), null);
+	}
+
+	/**
+	 * Writes the entries like {@link #writeData(DataBuilder)}, but the rooms and
+	 * data objects, which are unchanged since they were read from or written into
+	 * the source, are copied from the source instead of being encoded again.
+	 * Writes must not run at the same time.
+	 *
+	 * @param epoch  the epoch returned by {@link #newEpoch()} before the write
+	 * @param source the file this room was read from or written into the last
+	 *               time or null
+	 */
+	public void writeData(DataBuilder builder, long epoch, FileChannel source) throws IOException {
+		long start = builder.position();
+		writeData(builder, epoch, source, source == null ? -1 : encodedStart);
+		encodedStart = start;
+	}
+
+	/**
+	 * @param last the position of the content in the source or -1
+	 */
+	private void writeData(DataBuilder builder, long epoch, FileChannel source, long last) throws IOException {
+		load();
+		long start = builder.position();
+		ObjectRoom[] rooms;
+		Lock read = lock.readLock();
+		read.lock();
+		try {
+			if (last >= 0 && encodedDataLength >= 0 && dataChange <= encodedEpoch)
+				builder.buildCopy(source, last, encodedDataLength);
+			else
+				for (int i = 0; i < dataObjects.size(); i++)
+					builder.buildDataSet(dataObjects.get(i));
+			rooms = childs.toArray(new ObjectRoom[childs.size()]);
+		} finally {
+			read.unlock();
+		}
+		long dataEnd = builder.position();
+		int version = encodedVersion + 1;
+		int levels = builder.getIndexLevels();
+		String path = levels > 0 ? getPath() : null;
+		long[] lasts = new long[rooms.length];
+		boolean[] copied = new boolean[rooms.length];
+		for (int i = 0; i < rooms.length; i++) {
+			ObjectRoom child = rooms[i];
+			lasts[i] = last >= 0 && child.encodedParentVersion == encodedVersion && child.parent == this
+					&& child.encodedStart >= 0 ? last + child.encodedStart : -1;
+			copied[i] = lasts[i] >= 0 && child.lastChange <= child.encodedEpoch;
+		}
+		RoomWriter[] writers = null;
+		ArrayList<RoomWriter> batches = null;
+		if (builder.isParallel()) {
+			writers = new RoomWriter[rooms.length];
+			batches = RoomWriter.plan(builder, rooms, lasts, copied, epoch, source, path, writers);
+		}
+		// the child rooms are written without the lock of this room
+		for (int i = 0; i < rooms.length; i++) {
+			ObjectRoom child = rooms[i];
+			long entry = builder.position();
+			if (copied[i]) {
+				// unchanged, so the whole entry is copied
+				builder.buildCopy(source, lasts[i] - child.encodedHeader,
+						child.encodedHeader + child.encodedLength + 1);
+				child.encodedStart = entry + child.encodedHeader - start;
+				if (levels > 0)
+					child.indexCopied(builder, path + child.name + "/", entry, levels);
+			} else if (writers != null && writers[i] != null) {
+				RoomWriter writer = writers[i];
+				if (writer.first == i) {
+					if (writer.number + RoomWriter.AHEAD < batches.size())
+						batches.get(writer.number + RoomWriter.AHEAD).start(builder);
+					writer.finish(builder, start);
+				}
+			} else {
+				if (levels > 0)
+					builder.indexRoom(path + child.name + "/", entry);
+				long contentStart = child.writeEntry(builder, epoch, source, lasts[i]);
+				child.placed(entry, contentStart, builder.position(), start);
+			}
+			child.encodedParentVersion = version;
 		}
-		builder.buildDataText(Integer.toString(childs.size()));
-		for (int i = 0; i < childs.size(); i++) {
-			ObjectRoom child = childs.get(i);
-			builder.buildDataText("[" + child.getName() + "]:{");
-			child.writeData(builder);
-			builder.buildDataText("}");
+		encodedVersion = version;
+		encodedDataLength = dataEnd - start;
+		encodedLength = builder.position() - start;
+		encodedEpoch = epoch;
+	}
+
+	/**
+	 * Writes the whole entry of the room, with its tag and name
+	 *
+	 * @param last the position of the content in the source or -1
+	 * @return the position of the content or -1 if the room was compressed
+	 */
+	private long writeEntry(DataBuilder builder, long epoch, FileChannel source, long last) throws IOException {
+		boolean compressing = builder.isCompressing();
+		builder.buildRoomStart(name);
+		long contentStart = builder.position();
+		if (!compressing && builder.isCompressing()) {
+			// the room is compressed, so its parts can not be copied
+			writeData(builder, epoch, null, -1);
+			builder.buildRoomEnd();
+			return -1;
+		}
+		writeData(builder, epoch, source, encodedCompressed ? -1 : last);
+		builder.buildRoomEnd();
+		return contentStart;
+	}
+
+	/**
+	 * Keeps the position of the entry, which was written by
+	 * {@link #writeEntry(DataBuilder, long, FileChannel, long)}
+	 */
+	private void placed(long entry, long contentStart, long end, long parentStart) {
+		if (contentStart < 0)
+			compressedAt(entry, end, parentStart);
+		else
+			located(entry, contentStart, parentStart);
+	}
+
+	/**
+	 * Writes several child rooms on another thread into the memory, they are
+	 * added to the file in order by the thread of their parent
+	 */
+	private static class RoomWriter extends RecursiveAction {
+
+		private static final long serialVersionUID = 1968453120978310522L;
+
+		/**
+		 * count of batches, which are written ahead of the batch, which is added to
+		 * the file
+		 */
+		static final int AHEAD = Math.max(2, ForkJoinPool.getCommonPoolParallelism() * 2);
+
+		private final ObjectRoom[] rooms;
+		private final long[] lasts;
+		private final long epoch;
+		private final FileChannel source;
+		/**
+		 * the path of the parent, if the rooms are indexed, otherwise null
+		 */
+		private final String path;
+		/**
+		 * the rooms from first to end - 1 and the number of the batch in its parent
+		 */
+		final int first, number;
+		private int end;
+		private long bytes;
+
+		private DataBuilder part;
+		/**
+		 * the positions of the entries in the part, the position of the content is
+		 * -1 for a compressed room
+		 */
+		private long[] entries, contents, ends;
+		private IOException error;
+
+		private RoomWriter(ObjectRoom[] rooms, long[] lasts, long epoch, FileChannel source, String path, int first,
+				int number) {
+			this.rooms = rooms;
+			this.lasts = lasts;
+			this.epoch = epoch;
+			this.source = source;
+			this.path = path;
+			this.first = first;
+			this.number = number;
+		}
+
+		/**
+		 * Puts the rooms, which are not copied, into batches and starts the first
+		 * batches. Rooms with a lot of content are written by the thread of their
+		 * parent, so their child rooms are written in parallel instead
+		 *
+		 * @param writers receives the batch of every room, which is written by one
+		 * @return the batches in the order of the rooms
+		 */
+		static ArrayList<RoomWriter> plan(DataBuilder builder, ObjectRoom[] rooms, long[] lasts, boolean[] copied,
+				long epoch, FileChannel source, String path, RoomWriter[] writers) {
+			ArrayList<RoomWriter> batches = new ArrayList<>();
+			RoomWriter batch = null;
+			for (int i = 0; i < rooms.length; i++) {
+				ObjectRoom child = rooms[i];
+				if (copied[i] || child.encodedLength >= PARALLEL_SPLIT
+						|| child.getChilds().size() >= PARALLEL_SPLIT_ROOMS) {
+					batch = null; // the rooms of a batch are written one after another
+					continue;
+				}
+				if (batch == null) {
+					batch = new RoomWriter(rooms, lasts, epoch, source, path, i, batches.size());
+					batches.add(batch);
+				}
+				writers[i] = batch;
+				batch.end = i + 1;
+				batch.bytes += Math.max(child.encodedLength, 256);
+				if (batch.bytes >= PARALLEL_BATCH)
+					batch = null;
+			}
+			for (int i = 0; i < AHEAD && i < batches.size(); i++)
+				batches.get(i).start(builder);
+			return batches;
+		}
+
+		/**
+		 * Starts to write the rooms, the builder has to be at the depth of the rooms
+		 */
+		void start(DataBuilder builder) {
+			part = builder.part();
+			fork();
+		}
+
+		@Override
+		protected void compute() {
+			int count = end - first;
+			entries = new long[count];
+			contents = new long[count];
+			ends = new long[count];
+			try {
+				for (int i = 0; i < count; i++) {
+					ObjectRoom room = rooms[first + i];
+					entries[i] = part.position();
+					if (path != null)
+						part.indexRoom(path + room.name + "/", entries[i]);
+					contents[i] = room.writeEntry(part, epoch, source, lasts[first + i]);
+					ends[i] = part.position();
+				}
+			} catch (IOException e) {
+				error = e;
+			}
+		}
+
+		/**
+		 * Waits until the rooms are written and adds them to the file
+		 *
+		 * @param parentStart the position of the content of the parent
+		 */
+		void finish(DataBuilder builder, long parentStart) throws IOException {
+			join();
+			if (error != null)
+				throw error;
+			long offset = builder.buildPart(part);
+			for (int i = 0; i < end - first; i++)
+				rooms[first + i].placed(offset + entries[i], contents[i] < 0 ? -1 : offset + contents[i],
+						offset + ends[i], parentStart);
+			part = null;
+		}
+	}
+
+	/**
+	 * Adds the room, which was copied unchanged, and its child rooms, whose
+	 * positions in the content are known, to the index
+	 *
+	 * @param path   the path of this room
+	 * @param levels the count of levels of rooms, which are indexed
+	 */
+	private void indexCopied(DataBuilder builder, String path, long entry, int levels) {
+		builder.indexRoom(path, entry);
+		if (levels <= 1 || encodedCompressed)
+			return;
+		long content = entry + encodedHeader;
+		Lock read = lock.readLock();
+		read.lock();
+		try {
+			for (ObjectRoom child : childs)
+				if (child.encodedParentVersion == encodedVersion && child.encodedStart >= 0)
+					child.indexCopied(builder, path + child.name + "/",
+							content + child.encodedStart - child.encodedHeader, levels - 1);
+		} finally {
+			read.unlock();
 		}
 	}
 
 	public void printRooms() {
+		load();
 		if (name != "topRoom") {
 			String roomPath = getPath();
 			System.out.println(roomPath.substring(0, roomPath.length() - 1));
@@ -100,6 +1074,7 @@ public class ObjectRoom {
 	}
 
 	public void printDataObjects() {
+		load();
 		for (DataObject dO : dataObjects)
 			System.out.println(getPath() + dO.getKey() + " [" + dO.getType() + "]");
 		for (ObjectRoom objectRoom : childs)
@@ -0,0 +1,154 @@
+package de.snx.psf.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Index of the positions of the rooms in a file of the version 4.<br>
+ * The index is written behind the topRoom, followed by its position as the
+ * last 8 bytes of the file. It contains the count of rooms and for every room
+ * the hash of its path and the position of its entry, sorted by the hash, so
+ * a room can be found by a binary search.<br>
+ * An index, which is read, is searched in the input directly, so opening a
+ * file doesn't read the whole index.<br>
+ * Only the rooms up to the {@link #DEPTH} are indexed, deeper rooms are found
+ * through their parent. The rooms in a compressed room are not indexed. The
+ * entry of an indexed room still has to be checked, if it has the right name.
+ *
+ * @author Sunnix
+ *
+ */
+public class RoomIndex {
+
+	/**
+	 * the rooms in the topRoom and their child rooms are indexed
+	 */
+	public static final int DEPTH = 2;
+
+	private static final int RECORD_SIZE = 16;
+
+	/**
+	 * the rooms, which are written
+	 */
+	private long[] hashes, entries;
+	private int size;
+
+	/**
+	 * the input of an index, which is read, and the position of the first record
+	 */
+	private DataReader in;
+	private long records;
+
+	RoomIndex() {
+		hashes = new long[64];
+		entries = new long[64];
+	}
+
+	private RoomIndex(DataReader in, int size) {
+		this.in = in;
+		this.size = size;
+		records = in.position();
+	}
+
+	/**
+	 * FNV-1a hash of the path
+	 */
+	static long hash(String path) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < path.length(); i++) {
+			hash ^= path.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * @param path  the path of the room like "profiles/p42/"
+	 * @param entry the position of the tag of the room
+	 */
+	void add(String path, long entry) {
+		if (size == hashes.length) {
+			hashes = Arrays.copyOf(hashes, size * 2);
+			entries = Arrays.copyOf(entries, size * 2);
+		}
+		hashes[size] = hash(path);
+		entries[size++] = entry;
+	}
+
+	/**
+	 * Adds the rooms of an index, which was written into a part of the file
+	 *
+	 * @param offset the position of the part in the file
+	 */
+	void add(RoomIndex part, long offset) {
+		for (int i = 0; i < part.size; i++) {
+			if (size == hashes.length) {
+				hashes = Arrays.copyOf(hashes, size * 2);
+				entries = Arrays.copyOf(entries, size * 2);
+			}
+			hashes[size] = part.hashes[i];
+			entries[size++] = part.entries[i] + offset;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param path the path of the room like "profiles/p42/"
+	 * @return the position of the first entry, whose path has the same hash, or
+	 *         -1 if there is none
+	 */
+	public long find(String path) throws IOException {
+		long hash = hash(path);
+		DataReader in = this.in.duplicate(); // every search has its own position
+		int low = 0, high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			in.seek(records + (long) middle * RECORD_SIZE);
+			if (in.readLong() < hash)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		if (low == size)
+			return -1;
+		in.seek(records + (long) low * RECORD_SIZE);
+		return in.readLong() == hash ? in.readLong() : -1;
+	}
+
+	/**
+	 * Writes the index sorted by the hashes, rooms with the same hash in the
+	 * order of the file
+	 */
+	void write(DataWriter out) throws IOException {
+		// sorted by the upper half of the hashes and the order of the file
+		long[] order = new long[size];
+		for (int i = 0; i < size; i++)
+			order[i] = hashes[i] & 0xFFFFFFFF00000000L | i;
+		Arrays.sort(order);
+		// then by the lower half, which is almost never needed
+		for (int i = 1; i < size; i++) {
+			long record = order[i];
+			int j = i - 1;
+			for (; j >= 0 && order[j] >>> 32 == record >>> 32
+					&& hashes[(int) order[j]] > hashes[(int) record]; j--)
+				order[j + 1] = order[j];
+			order[j + 1] = record;
+		}
+		out.writeInt(size);
+		for (long record : order) {
+			out.writeLong(hashes[(int) record]);
+			out.writeLong(entries[(int) record]);
+		}
+	}
+
+	/**
+	 * @param in input, which contains the whole file, at the position of the
+	 *           index
+	 */
+	static RoomIndex read(DataReader in) throws IOException {
+		return new RoomIndex(in, in.readInt());
+	}
+}
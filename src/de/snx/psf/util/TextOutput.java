@@ -0,0 +1,72 @@
+package de.snx.psf.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Collects the UTF-8 bytes of a large text in chunks, so the text can be
+ * written without creating the whole String. The bytes are kept with their
+ * length like in the binary format, so the text is copied into the file
+ * without decoding it.<br>
+ * When the stream is closed, the text is given to the target as DataObject of
+ * the type {@link DataType#STRING}.
+ *
+ * @author Sunnix
+ *
+ */
+public class TextOutput extends OutputStream {
+
+	/**
+	 * the space for the length in front of the bytes
+	 */
+	private static final int LENGTH_SPACE = 5;
+
+	private final String key;
+	private final Consumer<DataObject> target;
+	private DataWriter out;
+	private boolean closed;
+
+	public TextOutput(String key, Consumer<DataObject> target) {
+		this.key = key;
+		this.target = target;
+	}
+
+	private DataWriter out() throws IOException {
+		if (closed)
+			throw new IOException("The text \"" + key + "\" is already written");
+		if (out == null) {
+			out = new DataWriter();
+			out.write(new byte[LENGTH_SPACE], 0, LENGTH_SPACE);
+		}
+		return out;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		out().writeByte(b);
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		out().write(bytes, offset, length);
+	}
+
+	/**
+	 * Gives the text to the target
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		ByteBuffer data = out().getData();
+		closed = true;
+		out = null;
+		int length = data.limit() - LENGTH_SPACE;
+		int start = LENGTH_SPACE - DataWriter.varIntSize(length);
+		data.position(start);
+		DataWriter.putVarInt(data, length);
+		target.accept(new DataObject(key, DataType.STRING, data, start));
+	}
+}